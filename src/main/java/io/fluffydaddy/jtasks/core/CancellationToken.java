@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.core;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Признак кооперативной отмены.
+ *
+ * <p>
+ * Проверка {@link #isCancellationRequested()} — одно volatile чтение, поэтому ее можно
+ * Делать прямо в горячем цикле doInBackground. Токены связываются в дерево: отмена
+ * Родителя отменяет всех потомков, а отмена потомка родителя не трогает.
+ * </p>
+ *
+ * <pre>
+ * CancellationToken token = CancellationToken.current();
+ * for (Item item : items) {
+ *     token.throwIfCancellationRequested();
+ *     process(item);
+ * }
+ * </pre>
+ *
+ * @see ITaskService#getCancellationToken()
+ * @see ITaskTracker#cancel()
+ */
+public final class CancellationToken {
+    private static final CancellationToken NONE = new CancellationToken(null, null);
+    private static final ThreadLocal<CancellationToken> sCurrent = new ThreadLocal<>();
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<CancellationToken, Set> CHILDREN =
+            AtomicReferenceFieldUpdater.newUpdater(CancellationToken.class, Set.class, "mChildren");
+    private static final AtomicIntegerFieldUpdater<CancellationToken> CANCELLED =
+            AtomicIntegerFieldUpdater.newUpdater(CancellationToken.class, "mCancelled");
+    
+    private volatile CancellationToken mParent;
+    private final Runnable mOnCancel;
+    // Создается с первым потомком: у большинства токенов потомков нет.
+    private volatile Set<CancellationToken> mChildren;
+    private volatile int mCancelled;
+    
+    public CancellationToken() {
+        this(null, null);
+    }
+    
+    /**
+     * Корневой токен, который при отмене один раз вызовет onCancel.
+     */
+    public CancellationToken(Runnable onCancel) {
+        this(null, onCancel);
+    }
+    
+    private CancellationToken(CancellationToken parent, Runnable onCancel) {
+        mParent = parent;
+        mOnCancel = onCancel;
+    }
+    
+    /**
+     * Токен задачи, которая выполняется в текущем потоке.
+     * Вне задачи вернет токен, который никогда не отменяется.
+     */
+    public static CancellationToken current() {
+        final CancellationToken token = sCurrent.get();
+        return token != null ? token : NONE;
+    }
+    
+    /**
+     * Токен, который никогда не отменяется.
+     */
+    public static CancellationToken none() {
+        return NONE;
+    }
+    
+    /**
+     * Сделает токен текущим для потока и вернет предыдущий, чтобы его восстановить.
+     */
+    public static CancellationToken bind(CancellationToken token) {
+        final CancellationToken previous = sCurrent.get();
+        // Без remove(): поток пула каждый запуск снова заводил бы запись в своей карте.
+        sCurrent.set(token);
+        return previous;
+    }
+    
+    /**
+     * Создаст дочерний токен. Если этот токен уже отменен, потомок отменяется сразу.
+     */
+    public CancellationToken newChild() {
+        return newChild(null);
+    }
+    
+    /**
+     * Создаст дочерний токен, который при отмене один раз вызовет onCancel.
+     */
+    public CancellationToken newChild(Runnable onCancel) {
+        final CancellationToken child = new CancellationToken(this, onCancel);
+        addChild(child);
+        return child;
+    }
+    
+    private void addChild(CancellationToken child) {
+        if (this == NONE) {
+            return;
+        }
+        children().add(child);
+        // Флаг читаем после добавления: либо cancel() увидит потомка, либо мы увидим флаг.
+        if (isCancellationRequested()) {
+            child.cancel();
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Set<CancellationToken> children() {
+        final Set<CancellationToken> children = mChildren;
+        if (children != null) {
+            return children;
+        }
+        CHILDREN.compareAndSet(this, null, ConcurrentHashMap.newKeySet());
+        return mChildren;
+    }
+    
+    /**
+     * Вернет токен в исходное состояние и привяжет к новому родителю,
+     * Вместо того чтобы выделять новый. Годится только для токена, на который
+     * Больше никто не ссылается, например токена повторно используемой задачи.
+     * Токен, еще записанный у того же родителя, привязывается к нему без выделений.
+     *
+     * @param parent Новый родитель или null.
+     */
+    public void reset(CancellationToken parent) {
+        if (this == NONE) {
+            throw new IllegalStateException("The none() token cannot be reset");
+        }
+        final Set<CancellationToken> children = mChildren;
+        if (children != null) {
+            children.clear();
+        }
+        if (mParent != parent) {
+            detach();
+        }
+        mParent = parent;
+        mCancelled = 0;
+        if (parent != null) {
+            parent.addChild(this);
+        }
+    }
+    
+    public boolean isCancellationRequested() {
+        return mCancelled != 0;
+    }
+    
+    public void throwIfCancellationRequested() {
+        if (mCancelled != 0) {
+            throw new CancellationException();
+        }
+    }
+    
+    /**
+     * Отменит токен и всех его потомков.
+     *
+     * @return false если токен уже был отменен.
+     */
+    public boolean cancel() {
+        if (this == NONE || !CANCELLED.compareAndSet(this, 0, 1)) {
+            return false;
+        }
+        final Set<CancellationToken> children = mChildren;
+        if (children != null) {
+            for (CancellationToken child : children) {
+                child.cancel();
+            }
+            children.clear();
+        }
+        if (mOnCancel != null) {
+            mOnCancel.run();
+        }
+        return true;
+    }
+    
+    /**
+     * Отвяжет токен от родителя, когда он больше не нужен,
+     * Чтобы родитель не держал ссылки на завершенную работу.
+     */
+    public void detach() {
+        final CancellationToken parent = mParent;
+        if (parent != null && parent.mChildren != null) {
+            parent.mChildren.remove(this);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.fluffydaddy.jtasks.core;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Где задача вызывает onComplete и onCanceled после завершения.
+ *
+ * <p>
+ * По умолчанию результат передается в главный поток задачи. На сервере без главного
+ * Цикла эта передача — лишняя очередь на каждое завершение, поэтому горячие задачи
+ * Могут получать результат прямо в рабочем потоке ({@link #inline()}) или в своем
+ * Исполнителе ({@link #on(Executor)}). Состояние задачи в {@code LiveData} при этом
+ * Все равно публикуется в главный поток.
+ * </p>
+ *
+ * @see ITaskService#setCompletionDispatch(CompletionDispatch)
+ * @see ITaskFactory#setCompletionDispatch(CompletionDispatch)
+ */
+public final class CompletionDispatch {
+    private static final Executor DIRECT = Runnable::run;
+    private static final CompletionDispatch MAIN = new CompletionDispatch(null);
+    private static final CompletionDispatch INLINE = new CompletionDispatch(DIRECT);
+    
+    private final Executor mExecutor;
+    
+    private CompletionDispatch(Executor executor) {
+        mExecutor = executor;
+    }
+    
+    /**
+     * В главный поток задачи, см. {@link ITaskService#setMainExecutor(Executor)}.
+     */
+    public static CompletionDispatch main() {
+        return MAIN;
+    }
+    
+    /**
+     * Прямо в потоке, который завершил задачу, без очередей.
+     */
+    public static CompletionDispatch inline() {
+        return INLINE;
+    }
+    
+    /**
+     * В указанный исполнитель.
+     */
+    public static CompletionDispatch on(Executor executor) {
+        return new CompletionDispatch(Objects.requireNonNull(executor, "executor cannot be null"));
+    }
+    
+    /**
+     * Исполнитель для доставки результата.
+     *
+     * @param mainExecutor Главный исполнитель задачи.
+     */
+    public Executor select(Executor mainExecutor) {
+        return mExecutor != null ? mExecutor : mainExecutor;
+    }
+    
+    public boolean isInline() {
+        return this == INLINE;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.fluffydaddy.jtasks.core;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Политика подстраховки медленных задач.
+ *
+ * <p>
+ * Если попытка идет дольше порога, рядом запускается ее копия, и побеждает тот,
+ * Кто первым вернет результат. Порог задается жестко или берется из перцентиля
+ * Времени последних успешных попыток: так копии запускаются только для хвоста
+ * Медленных вызовов. Пока замеров мало, действует запасной жесткий порог.
+ * Одну политику стоит делить между задачами одного вида, чтобы замеры были общими.
+ * </p>
+ *
+ * <pre>
+ * ITaskService&lt;Page, Void&gt; fetch = factory.createHedgedTask(() -&gt; load(url),
+ *         HedgePolicy.newBuilder().percentile(0.95).build());
+ * </pre>
+ *
+ * @see ITaskFactory#createHedgedTask(java.util.concurrent.Callable, HedgePolicy)
+ */
+public final class HedgePolicy {
+    private static final int WINDOW_SIZE = 256;
+    // Перцентиль пересчитывается не на каждый замер, а раз в столько замеров.
+    private static final int RECOMPUTE_INTERVAL = 16;
+    
+    private final long mDelayNanos;
+    private final double mPercentile;
+    private final int mMinSamples;
+    private final int mMaxHedges;
+    
+    private final AtomicLongArray mSamples = new AtomicLongArray(WINDOW_SIZE);
+    private final AtomicLong mSampleCount = new AtomicLong();
+    private volatile long mThresholdNanos;
+    private volatile long mThresholdAt = -1;
+    
+    private HedgePolicy(Builder builder) {
+        mDelayNanos = builder.delayNanos;
+        mPercentile = builder.percentile;
+        mMinSamples = builder.minSamples;
+        mMaxHedges = builder.maxHedges;
+        mThresholdNanos = mDelayNanos;
+    }
+    
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+    
+    /**
+     * Запомнит время успешной попытки.
+     */
+    public void recordLatency(long nanos) {
+        final long index = mSampleCount.getAndIncrement();
+        mSamples.set((int) (index % WINDOW_SIZE), nanos);
+    }
+    
+    /**
+     * Через сколько наносекунд после начала попытки запускать копию.
+     */
+    public long getThresholdNanos() {
+        final long count = mSampleCount.get();
+        if (mPercentile <= 0.0 || count < mMinSamples) {
+            return mDelayNanos;
+        }
+        if (count - mThresholdAt >= RECOMPUTE_INTERVAL) {
+            mThresholdAt = count;
+            mThresholdNanos = computePercentile((int) Math.min(count, WINDOW_SIZE));
+        }
+        return mThresholdNanos;
+    }
+    
+    private long computePercentile(int size) {
+        final long[] samples = new long[size];
+        for (int i = 0; i < size; i++) {
+            samples[i] = mSamples.get(i);
+        }
+        Arrays.sort(samples);
+        final int index = (int) Math.ceil(mPercentile * size) - 1;
+        return samples[Math.max(0, Math.min(size - 1, index))];
+    }
+    
+    public long getSampleCount() {
+        return mSampleCount.get();
+    }
+    
+    public int getMaxHedges() {
+        return mMaxHedges;
+    }
+    
+    public static final class Builder {
+        private long delayNanos = TimeUnit.MILLISECONDS.toNanos(500);
+        private double percentile;
+        private int minSamples = 20;
+        private int maxHedges = 1;
+        
+        Builder() {
+        }
+        
+        /**
+         * Жесткий порог, а при заданном перцентиле — запасной, пока замеров мало.
+         * По умолчанию 500 миллисекунд.
+         */
+        public Builder delay(long delay, TimeUnit unit) {
+            if (delay < 0) {
+                throw new IllegalArgumentException("delay cannot be negative: " + delay);
+            }
+            delayNanos = unit.toNanos(delay);
+            return this;
+        }
+        
+        /**
+         * Брать порог из перцентиля времени успешных попыток, например 0.95.
+         */
+        public Builder percentile(double percentile) {
+            if (percentile <= 0.0 || percentile >= 1.0) {
+                throw new IllegalArgumentException("percentile must be within (0, 1): " + percentile);
+            }
+            this.percentile = percentile;
+            return this;
+        }
+        
+        /**
+         * Сколько замеров нужно, чтобы перцентилю можно было верить. По умолчанию 20.
+         */
+        public Builder minSamples(int minSamples) {
+            if (minSamples <= 0) {
+                throw new IllegalArgumentException("minSamples must be positive: " + minSamples);
+            }
+            this.minSamples = minSamples;
+            return this;
+        }
+        
+        /**
+         * Сколько копий можно запустить на один запуск задачи. По умолчанию 1.
+         */
+        public Builder maxHedges(int maxHedges) {
+            if (maxHedges <= 0) {
+                throw new IllegalArgumentException("maxHedges must be positive: " + maxHedges);
+            }
+            this.maxHedges = maxHedges;
+            return this;
+        }
+        
+        public HedgePolicy build() {
+            return new HedgePolicy(this);
+        }
+    }
+}
@@ -16,15 +16,134 @@
 
 package io.fluffydaddy.jtasks.core;
 
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
 import io.fluffydaddy.jtasks.factory.Job;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 public abstract class ITaskFactory {
+    private volatile ExecutorPool mTaskPool;
+    private volatile CompletionDispatch mCompletionDispatch = CompletionDispatch.main();
+    
+    protected ITaskFactory(ExecutorPool taskPool) {
+        mTaskPool = Objects.requireNonNull(taskPool, "taskPool cannot be null");
+    }
+    
+    protected ITaskFactory() {
+        this(ExecutorPool.getDefaultPool());
+    }
+    
+    /**
+     * Пул потоков, в котором будут выполняться все задачи этой фабрики.
+     */
+    public void setTaskPool(ExecutorPool taskPool) {
+        mTaskPool = Objects.requireNonNull(taskPool, "taskPool cannot be null");
+    }
+    
+    public ExecutorPool getTaskPool() {
+        return mTaskPool;
+    }
+    
+    /**
+     * Где доставлять результаты задач, которые создаст фабрика.
+     *
+     * @see ITaskService#setCompletionDispatch(CompletionDispatch)
+     */
+    public void setCompletionDispatch(CompletionDispatch dispatch) {
+        mCompletionDispatch = Objects.requireNonNull(dispatch, "dispatch cannot be null");
+    }
+    
+    public CompletionDispatch getCompletionDispatch() {
+        return mCompletionDispatch;
+    }
+    
     public abstract <R> ITaskService<R, Void> createTask(Callable<R> job);
     
     public abstract <R, P> ITaskService<R, P> createTask(Job<R, P> job);
     
+    /**
+     * Создаст задачу, которая при задержке дольше порога политики запускает
+     * Копию работы и отдает первый полученный результат.
+     *
+     * @see HedgePolicy
+     */
+    public abstract <R> ITaskService<R, Void> createHedgedTask(Callable<R> job, HedgePolicy policy);
+    
+    /**
+     * Откроет область, задачи которой не переживут ее закрытие.
+     *
+     * @see ITaskScope
+     */
+    public abstract <R> ITaskScope<R> openScope(ITaskScope.Policy policy);
+    
+    /**
+     * Запустит работу один раз на ключ: пока задача с тем же ключом выполняется,
+     * Все вызовы получают ее же и ждут одного результата через
+     * {@link ITaskService#getCompletion()}. Возвращенная задача уже запущена,
+     * Повторно запускать ее не нужно, а отмена отменит ее для всех.
+     *
+     * @see #setShareTtl(long, TimeUnit)
+     */
+    public abstract <R> ITaskService<R, Void> shareTask(Object key, Callable<R> job);
+    
+    /**
+     * То же самое, но ключ — сама работа вместе с аргументом.
+     *
+     * @see #shareTask(Object, Callable)
+     */
+    public abstract <R, P> ITaskService<R, P> shareTask(Job<R, P> job, P param);
+    
+    /**
+     * Сколько еще держать успешный результат общей задачи после завершения,
+     * Ноль отдает ключ сразу. Ошибка и отмена отдают ключ всегда сразу.
+     */
+    public abstract void setShareTtl(long ttl, TimeUnit unit);
+    
+    /**
+     * Создаст задачи сразу для множества работ в том же порядке.
+     *
+     * @see ITaskTracker#trackAll(Collection)
+     */
+    public <R> List<ITaskService<R, Void>> createTasks(Collection<? extends Callable<R>> jobs) {
+        final List<ITaskService<R, Void>> tasks = new ArrayList<>(jobs.size());
+        for (Callable<R> job : jobs) {
+            tasks.add(createTask(job));
+        }
+        return tasks;
+    }
+    
+    /**
+     * Создаст задачу и запустит ее через указанное время.
+     *
+     * @see ITaskService#schedule(long, TimeUnit)
+     */
+    public <R> ITaskSchedule<R> schedule(Callable<R> job, long delay, TimeUnit unit) {
+        return createTask(job).schedule(delay, unit);
+    }
+    
+    /**
+     * Создаст задачу и будет запускать ее с фиксированной частотой.
+     *
+     * @see ITaskService#scheduleAtFixedRate(long, long, TimeUnit)
+     */
+    public ITaskSchedule<Void> scheduleAtFixedRate(Runnable job, long initialDelay, long period, TimeUnit unit) {
+        return createTask(job).scheduleAtFixedRate(initialDelay, period, unit);
+    }
+    
+    /**
+     * Создаст задачу и будет запускать ее с фиксированной паузой между запусками.
+     *
+     * @see ITaskService#scheduleWithFixedDelay(long, long, TimeUnit)
+     */
+    public ITaskSchedule<Void> scheduleWithFixedDelay(Runnable job, long initialDelay, long delay, TimeUnit unit) {
+        return createTask(job).scheduleWithFixedDelay(initialDelay, delay, unit);
+    }
+    
     public ITaskService<Void, Void> createTask(final Runnable job) {
         return createTask(() -> {
             job.run();
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.core;
+
+import io.fluffydaddy.reactive.livedata.LiveData;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Группа задач, отслеживаемых вместе.
+ *
+ * <p>
+ * Позволяет ждать, отменять и наблюдать за множеством задач через один объект,
+ * Вместо того чтобы обращаться к каждой задаче отдельно.
+ * </p>
+ *
+ * <p>
+ * Каждая задача учитывается по одному запуску: начатому через {@link #execute()}
+ * Или, для группы из {@link ITaskTracker#trackAll(java.util.Collection)}, запуску,
+ * Который идет или начнется после {@link ITaskTracker#startTracking()}. Результат
+ * Прошлых запусков группа не засчитывает.
+ * </p>
+ *
+ * @see ITaskTracker#trackAll(java.util.Collection)
+ */
+public interface ITaskGroup<R> {
+    /**
+     * Запустит все задачи группы без аргументов.
+     *
+     * @see ITaskService#execute()
+     */
+    void execute();
+    
+    /**
+     * Отменит все задачи группы.
+     *
+     * @see ITaskService#cancel()
+     */
+    void cancel();
+    
+    /**
+     * Принудительно завершит все задачи группы.
+     *
+     * @see ITaskService#destroy()
+     */
+    void destroy();
+    
+    /**
+     * Ждёт выполнения всех задач и вернет их результаты в порядке задач.
+     * Для задач с ошибкой или отмененных результат равен null.
+     */
+    List<R> awaitTermination();
+    
+    /**
+     * Ждёт выполнения всех задач не дольше общего тайм-аута.
+     * Для незавершенных задач результат равен null.
+     */
+    List<R> awaitTermination(long timeout, TimeUnit unit);
+    
+    /**
+     * Завершится, когда завершатся все задачи группы, независимо от их исхода.
+     */
+    CompletableFuture<Void> getCompletion();
+    
+    /**
+     * Наблюдение за количеством завершенных задач. Частые изменения
+     * Сливаются в одно уведомление, а не по одному на каждую задачу.
+     */
+    LiveData<Integer> getLiveCompleted();
+    
+    /**
+     * Количество завершенных задач, включая ошибки и отмены.
+     */
+    int getCompletedCount();
+    
+    /**
+     * Количество задач, завершенных с ошибкой или отмененных.
+     */
+    int getFailedCount();
+    
+    /**
+     * Количество задач в группе.
+     */
+    int size();
+    
+    /**
+     * Получить список задач группы.
+     */
+    List<ITaskService<R, ?>> getTasks();
+}
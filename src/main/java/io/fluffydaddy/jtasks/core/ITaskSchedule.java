@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенный или периодический запуск задачи.
+ *
+ * <p>
+ * Между запусками задача не занимает ни одного потока: время отсчитывает
+ * Общий таймер {@link io.fluffydaddy.jtasks.execution.ExecutorTimer}.
+ * </p>
+ *
+ * @see ITaskService#scheduleAtFixedRate(long, long, TimeUnit)
+ */
+public interface ITaskSchedule<R> {
+    /**
+     * Отменит все будущие запуски. Уже идущий запуск не прерывается.
+     */
+    boolean cancel();
+    
+    /**
+     * Отменено ли расписание.
+     */
+    boolean isCancelled();
+    
+    /**
+     * Задача, которую запускает расписание.
+     */
+    ITaskService<R, ?> getTask();
+    
+    /**
+     * Количество запусков задачи.
+     */
+    long getRunCount();
+    
+    /**
+     * Количество пропущенных запусков с фиксированной частотой: предыдущий
+     * Запуск еще не закончился, или таймер опоздал больше чем на период.
+     */
+    long getSkipCount();
+    
+    /**
+     * Количество запусков, которые длились дольше периода.
+     */
+    long getOverrunCount();
+    
+    /**
+     * Наибольшее опоздание запуска относительно расписания.
+     */
+    long getMaxJitter(TimeUnit unit);
+    
+    /**
+     * Среднее опоздание запуска относительно расписания.
+     */
+    long getMeanJitter(TimeUnit unit);
+}
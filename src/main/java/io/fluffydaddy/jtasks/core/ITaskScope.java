@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.fluffydaddy.jtasks.core;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Область жизни группы задач.
+ *
+ * <p>
+ * Задачи, запущенные через {@link #fork(Callable)}, не переживают область:
+ * {@link #close()} дожидается их всех, а после первой ошибки или первого
+ * Успеха (смотря по {@link Policy}) остальные отменяются через общий токен.
+ * Область, открытая внутри задачи, отменяется вместе с ней.
+ * </p>
+ *
+ * <pre>
+ * try (ITaskScope&lt;Data&gt; scope = factory.openScope(ITaskScope.Policy.FAIL_FAST)) {
+ *     scope.fork(() -&gt; loadA());
+ *     scope.fork(() -&gt; loadB());
+ *     List&lt;Data&gt; data = scope.join().throwIfFailed().results();
+ * }
+ * </pre>
+ */
+public interface ITaskScope<R> extends AutoCloseable {
+    enum Policy {
+        /**
+         * Ждать все задачи, ошибки не трогают соседей.
+         */
+        ALL,
+        
+        /**
+         * Первая ошибка отменяет все остальные задачи.
+         */
+        FAIL_FAST,
+        
+        /**
+         * Первый успешный результат отменяет все остальные задачи.
+         */
+        FIRST_SUCCESS
+    }
+    
+    /**
+     * Создаст задачу в области и сразу ее запустит.
+     */
+    <T extends R> ITaskService<T, Void> fork(Callable<T> job);
+    
+    /**
+     * Запустит готовую задачу в области. Ее токен отмены станет потомком токена области.
+     */
+    <T extends R> ITaskService<T, ?> fork(ITaskService<T, ?> task);
+    
+    /**
+     * Ждёт, пока все задачи области завершатся или будут отменены.
+     */
+    ITaskScope<R> join() throws InterruptedException;
+    
+    /**
+     * Ждёт не дольше тайм-аута, вернет false если кто-то еще не завершился.
+     */
+    boolean join(long timeout, TimeUnit unit) throws InterruptedException;
+    
+    /**
+     * Отменит все незавершенные задачи области, новые задачи больше не запустятся.
+     */
+    void shutdown();
+    
+    boolean isShutdown();
+    
+    /**
+     * Бросит первую ошибку задач области, обернутую в {@link ExecutionException}.
+     */
+    ITaskScope<R> throwIfFailed() throws ExecutionException;
+    
+    /**
+     * Первый успешный результат. Если успешных нет, бросит первую ошибку
+     * Или {@link java.util.concurrent.CancellationException}, если ошибок тоже не было.
+     */
+    R result() throws ExecutionException;
+    
+    /**
+     * Результаты в порядке запуска, null для ошибок, отмен и незавершенных задач.
+     */
+    List<R> results();
+    
+    /**
+     * Первая ошибка задач области или null. Отмены ошибкой не считаются.
+     */
+    Throwable getFailure();
+    
+    /**
+     * Токен области, родитель токенов всех ее задач.
+     */
+    CancellationToken getCancellationToken();
+    
+    /**
+     * Дождется всех задач области и освободит ее токен. Новые задачи после этого не принимаются.
+     */
+    @Override
+    void close();
+}
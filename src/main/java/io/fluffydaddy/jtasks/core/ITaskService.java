@@ -20,10 +20,14 @@ import io.fluffydaddy.jtasks.execution.ExecutorHandler;
 import io.fluffydaddy.reactive.DataSubscription;
 import io.fluffydaddy.reactive.livedata.LiveData;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
+import java.util.function.BiFunction;
 
 public interface ITaskService<R, P> extends ExecutorHandler<R, P>, Executor, DataSubscription {
     /**
@@ -79,6 +83,17 @@ public interface ITaskService<R, P> extends ExecutorHandler<R, P>, Executor, Dat
      */
     R get(long timeInOut, TimeUnit timeInUnit);
     
+    /**
+     * Результат последнего запуска задачи в виде {@link CompletableFuture}.
+     * Завершается прямо в рабочем потоке, без перехода в главный поток.
+     * В отличие от {@link #get()} ошибка из doInBackground не глотается,
+     * А завершает future исключением. Если задача еще не запускалась,
+     * Future завершится вместе со следующим запуском.
+     *
+     * @see java.util.concurrent.CompletionStage
+     */
+    CompletableFuture<R> getCompletion();
+    
     /**
      * Если tracker отправил уведомление,
      * О прикреплении к себе задачи, то можем
@@ -113,6 +128,118 @@ public interface ITaskService<R, P> extends ExecutorHandler<R, P>, Executor, Dat
      */
     void execute();
     
+    /**
+     * Токен отмены текущего запуска. Проверка токена в doInBackground стоит одно
+     * Volatile чтение; отмена задачи, трекера или родительского токена его отменяет.
+     * Внутри doInBackground тот же токен доступен через {@link CancellationToken#current()}.
+     */
+    CancellationToken getCancellationToken();
+    
+    /**
+     * Свяжет токены следующих запусков с родительским токеном.
+     * Трекер делает это сам при {@link #submit(ITaskTracker)}.
+     */
+    void setCancellationParent(CancellationToken parent);
+    
+    /**
+     * Политика повтора упавших запусков. Повтор ждет на общем таймере, а не
+     * В потоке пула, и до следующей попытки задача остается в {@link TrackState#RETRYING}.
+     * {@code null} отключает повторы.
+     */
+    void setRetryPolicy(RetryPolicy policy);
+    
+    RetryPolicy getRetryPolicy();
+    
+    /**
+     * Число попыток текущего запуска, включая первую.
+     */
+    int getAttemptCount();
+    
+    /**
+     * Время последней попытки.
+     */
+    long getLastAttemptTime(TimeUnit unit);
+    
+    /**
+     * Время всего запуска от первой попытки до результата, вместе с паузами
+     * Между попытками, или -1 если запуск еще не завершен.
+     */
+    long getRunTime(TimeUnit unit);
+    
+    /**
+     * Продолжит последний запуск задачи, а до первого запуска — первый, шагом
+     * В потоке, который завершил задачу. Результат не ходит через главный поток.
+     *
+     * @see ITaskStage
+     */
+    <U> ITaskStage<U> then(ITaskStage.Step<? super R, ? extends U> step);
+    
+    /**
+     * То же, но шаг отправляется в пул задачи.
+     */
+    <U> ITaskStage<U> thenAsync(ITaskStage.Step<? super R, ? extends U> step);
+    
+    /**
+     * То же, но шаг отправляется в указанный исполнитель.
+     */
+    <U> ITaskStage<U> thenAsync(ITaskStage.Step<? super R, ? extends U> step, Executor executor);
+    
+    /**
+     * Продолжит запуск при любом исходе: шаг получит либо результат, либо ошибку.
+     */
+    <U> ITaskStage<U> handle(BiFunction<? super R, Throwable, ? extends U> handler);
+    
+    /**
+     * Триггер, который сливает вызовы во время идущего запуска в один
+     * Следующий запуск с последним аргументом.
+     */
+    ITaskTrigger<R, P> conflate();
+    
+    /**
+     * Триггер, который запускает задачу, только когда вызовы затихли на окно.
+     */
+    ITaskTrigger<R, P> debounce(long window, TimeUnit unit);
+    
+    /**
+     * Триггер, который запускает задачу не чаще одного раза за окно: первый вызов
+     * Сразу, остальные сливаются в один запуск в конце окна.
+     */
+    ITaskTrigger<R, P> throttle(long window, TimeUnit unit);
+    
+    /**
+     * Запустит задачу без аргументов через указанное время.
+     *
+     * @see ITaskSchedule
+     */
+    ITaskSchedule<R> schedule(long delay, TimeUnit unit);
+    
+    /**
+     * Запускает задачу с фиксированной частотой: каждые period после initialDelay.
+     * Если предыдущий запуск еще идет, очередной пропускается, а не накладывается.
+     *
+     * @see java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate
+     */
+    ITaskSchedule<R> scheduleAtFixedRate(long initialDelay, long period, TimeUnit unit);
+    
+    /**
+     * Запускает задачу с фиксированной паузой delay между концом
+     * Одного запуска и началом следующего.
+     *
+     * @see java.util.concurrent.ScheduledExecutorService#scheduleWithFixedDelay
+     */
+    ITaskSchedule<R> scheduleWithFixedDelay(long initialDelay, long delay, TimeUnit unit);
+    
+    /**
+     * Запускает подзадачу в пуле work-stealing. Вызывается из {@link #doInBackground(Object)},
+     * Результат забирается через {@link ForkJoinTask#join()}.
+     * Подзадачи отменяются вместе с задачей. Ошибка подзадачи не меняет состояние
+     * Задачи, она приходит в {@link ForkJoinTask#join()} и считается трекером,
+     * См. {@link ITaskTracker#getSubtaskFailureCount()}.
+     *
+     * @see java.util.concurrent.ForkJoinPool
+     */
+    <T> ForkJoinTask<T> fork(Callable<T> subtask);
+    
     /**
      * Завершение выполнения задачи.
      *
@@ -142,6 +269,34 @@ public interface ITaskService<R, P> extends ExecutorHandler<R, P>, Executor, Dat
      */
     void setName(String name);
     
+    /**
+     * Установит класс приоритета задачи.
+     * Учитывается планировщиком {@link io.fluffydaddy.jtasks.execution.ExecutorPriority}.
+     *
+     * @see Thread#setPriority(int)
+     */
+    void setPriority(TaskPriority priority);
+    
+    /**
+     * Получит класс приоритета задачи.
+     */
+    TaskPriority getPriority();
+    
+    /**
+     * Установит крайний срок старта задачи, отсчитываемый от {@link #execute(Object)}.
+     * Срок раньше окна приоритета поднимает задачу в очереди. Ноль снимает срок.
+     */
+    void setDeadline(long timeout, TimeUnit unit);
+    
+    /**
+     * Установит максимальное время одного запуска задачи.
+     * По истечении времени незавершенная задача принудительно завершается
+     * Через {@link #destroy()}. Ноль снимает ограничение.
+     *
+     * @see io.fluffydaddy.jtasks.execution.ExecutorTimer
+     */
+    void setTimeout(long timeout, TimeUnit unit);
+    
     /**
      * Установит/добавит активное состояние в цикле задачи.
      *
@@ -196,6 +351,14 @@ public interface ITaskService<R, P> extends ExecutorHandler<R, P>, Executor, Dat
      */
     Executor getMainExecutor();
     
+    /**
+     * Где доставлять результат задачи: в главный поток, прямо в рабочем потоке
+     * Или в своем исполнителе. По умолчанию в главный поток.
+     */
+    void setCompletionDispatch(CompletionDispatch dispatch);
+    
+    CompletionDispatch getCompletionDispatch();
+    
     /**
      * Получит хендлер для запуска различных задач на выполнение в выбранном потоке.
      */
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.fluffydaddy.jtasks.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+
+/**
+ * Шаг цепочки продолжений задачи.
+ *
+ * <p>
+ * {@link #then(Step)} и {@link #handle(BiFunction)} выполняются прямо в потоке, который
+ * Завершил предыдущий шаг, без передачи в главный поток и без {@code LiveData}:
+ * Многошаговая работа не платит за переходы между потоками на каждом шаге.
+ * Если предыдущий шаг уже завершен, продолжение выполнится в вызывающем потоке.
+ * {@link #thenAsync(Step)} явно отправляет шаг в пул задачи.
+ * </p>
+ *
+ * <p>
+ * Вся цепочка делит один токен отмены: внутри шага он доступен через
+ * {@link CancellationToken#current()}, а после {@link #cancel()} следующие шаги
+ * Не выполняются и завершаются {@link java.util.concurrent.CancellationException}.
+ * </p>
+ *
+ * @see ITaskService#then(Step)
+ */
+public interface ITaskStage<T> {
+    /**
+     * Работа одного шага. В отличие от {@link java.util.function.Function} может бросать исключения.
+     */
+    interface Step<T, U> {
+        U apply(T value) throws Exception;
+    }
+    
+    /**
+     * Следующий шаг в потоке, который завершил этот.
+     */
+    <U> ITaskStage<U> then(Step<? super T, ? extends U> step);
+    
+    /**
+     * Следующий шаг в пуле задачи, с которой началась цепочка.
+     */
+    <U> ITaskStage<U> thenAsync(Step<? super T, ? extends U> step);
+    
+    /**
+     * Следующий шаг в указанном исполнителе.
+     */
+    <U> ITaskStage<U> thenAsync(Step<? super T, ? extends U> step, Executor executor);
+    
+    /**
+     * Следующий шаг при любом исходе этого: получит либо результат, либо ошибку.
+     */
+    <U> ITaskStage<U> handle(BiFunction<? super T, Throwable, ? extends U> handler);
+    
+    /**
+     * Отменит задачу, с которой началась цепочка, и все шаги, которые еще не выполнились.
+     */
+    void cancel();
+    
+    /**
+     * Токен отмены всей цепочки.
+     */
+    CancellationToken getCancellationToken();
+    
+    /**
+     * Завершится результатом этого шага.
+     */
+    CompletableFuture<T> getCompletion();
+}
@@ -16,6 +16,7 @@
 
 package io.fluffydaddy.jtasks.core;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -32,6 +33,32 @@ public interface ITaskTracker {
      */
     void track(ITaskService task);
     
+    /**
+     * Слежка за задачей, которая зависит от других задач.
+     * При {@link #startTracking()} трекер сам запускает такую задачу, как только
+     * Завершились все ее зависимости, а также зависимости, которые отслеживает он же.
+     * Результат единственной зависимости передается задаче параметром,
+     * Результаты нескольких зависимостей — списком в порядке объявления.
+     * Ошибка или отмена зависимости отменяет все задачи ниже по графу:
+     * Их запуск сразу завершается отменой, и {@link ITaskService#getCompletion()} не повиснет.
+     *
+     * <p>
+     * Задачи графа запускает только трекер, вызывать их execute() самому не нужно,
+     * Иначе они выполнятся дважды. Зависимость, за которой трекер не следит,
+     * Запускает ее владелец, трекер лишь ждет ее результат. Цикл в графе
+     * {@link #startTracking()} обнаружит до отправки задач и бросит
+     * {@link IllegalStateException}, ничего не запустив.
+     * </p>
+     */
+    void track(ITaskService<?, ?> task, ITaskService<?, ?>... dependencies);
+    
+    /**
+     * Слежка сразу за множеством задач одной операцией.
+     * Вернет группу, через которую задачи можно запустить,
+     * Дождаться или отменить все вместе.
+     */
+    <R> ITaskGroup<R> trackAll(Collection<? extends ITaskService<R, ?>> tasks);
+    
     /**
      * Разрушает связь между задачей и больше не следит
      * Что происходит с задачей спит ли она или просто ждет ответа.
@@ -43,6 +70,17 @@ public interface ITaskTracker {
      */
     void startTracking();
     
+    /**
+     * Отменит все задачи трекера и всех дочерних трекеров через общий токен отмены.
+     * Задачи, которые проверяют свой токен, останавливаются почти сразу.
+     */
+    void cancel();
+    
+    /**
+     * Токен отмены трекера, родитель токенов всех его задач.
+     */
+    CancellationToken getCancellationToken();
+    
     /**
      * Теряет связь с задачей(ами).
      */
@@ -53,6 +91,40 @@ public interface ITaskTracker {
      */
     Map<ITaskService, ?> awaitTermination();
     
+    /**
+     * Сколько раз задачи трекера уходили на повтор после ошибки.
+     */
+    long getRetryCount();
+    
+    /**
+     * Отметит запуск задачи, в котором сработала подстраховка.
+     *
+     * @param hedges Сколько копий было запущено.
+     * @param won    Результат дала копия, а не основная попытка.
+     */
+    void recordHedges(ITaskService<?, ?> from, int hedges, boolean won);
+    
+    /**
+     * Сколько копий запустили задачи трекера.
+     */
+    long getHedgeCount();
+    
+    /**
+     * Сколько раз копия оказалась быстрее основной попытки.
+     */
+    long getHedgeWinCount();
+    
+    /**
+     * Отметит упавшую подзадачу из {@link ITaskService#fork(java.util.concurrent.Callable)}.
+     * Состояние самой задачи не меняется: она может обработать ошибку и завершиться успешно.
+     */
+    void recordSubtaskFailure(ITaskService<?, ?> from, Throwable cause);
+    
+    /**
+     * Сколько подзадач упало у задач трекера.
+     */
+    long getSubtaskFailureCount();
+    
     /**
      * Установит состояние слежки.
      */
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.fluffydaddy.jtasks.core;
+
+/**
+ * Частый повторный запуск задачи, сжатый в редкие настоящие запуски.
+ *
+ * <p>
+ * Пока запуск идет, новые вызовы {@link #trigger(Object)} не копятся, а сливаются в один
+ * Ожидающий запуск с последним аргументом. Задача никогда не выполняется сама с собой
+ * Параллельно. Окна debounce и throttle отсчитывает общий таймер
+ * {@link io.fluffydaddy.jtasks.execution.ExecutorTimer}, ни один поток при этом не спит.
+ * </p>
+ *
+ * @see ITaskService#conflate()
+ * @see ITaskService#debounce(long, java.util.concurrent.TimeUnit)
+ * @see ITaskService#throttle(long, java.util.concurrent.TimeUnit)
+ */
+public interface ITaskTrigger<R, P> {
+    /**
+     * Попросит запустить задачу с аргументом. Аргументы прошлых, еще не
+     * Запущенных вызовов отбрасываются.
+     */
+    void trigger(P param);
+    
+    /**
+     * Отбросит ожидающий запуск и окно. Уже идущий запуск не прерывается,
+     * Новые вызовы {@link #trigger(Object)} снова работают.
+     */
+    void cancel();
+    
+    /**
+     * Задача, которую запускает триггер.
+     */
+    ITaskService<R, P> getTask();
+    
+    /**
+     * Количество вызовов {@link #trigger(Object)}.
+     */
+    long getTriggerCount();
+    
+    /**
+     * Количество настоящих запусков задачи.
+     */
+    long getRunCount();
+}
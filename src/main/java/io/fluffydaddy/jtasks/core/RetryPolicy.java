@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Политика повторных попыток задачи.
+ *
+ * <p>
+ * Если doInBackground бросил исключение, которое подходит под политику, задача не
+ * Завершается, а перезапускается через паузу. Пауза растет экспоненциально от попытки
+ * К попытке и случайно укорачивается на долю jitter, чтобы множество задач, упавших
+ * Одновременно, не повторяли запросы тоже одновременно. Паузу отсчитывает таймер,
+ * Поток на время ожидания не занимается.
+ * </p>
+ *
+ * <pre>
+ * task.setRetryPolicy(RetryPolicy.newBuilder()
+ *         .maxAttempts(5)
+ *         .backoff(100, 10_000, TimeUnit.MILLISECONDS)
+ *         .retryOn(IOException.class)
+ *         .build());
+ * </pre>
+ *
+ * @see ITaskService#setRetryPolicy(RetryPolicy)
+ */
+public final class RetryPolicy {
+    private final int mMaxAttempts;
+    private final long mInitialDelayNanos;
+    private final long mMaxDelayNanos;
+    private final double mMultiplier;
+    private final double mJitter;
+    private final Predicate<? super Exception> mRetryOn;
+    
+    private RetryPolicy(Builder builder) {
+        mMaxAttempts = builder.maxAttempts;
+        mInitialDelayNanos = builder.initialDelayNanos;
+        mMaxDelayNanos = builder.maxDelayNanos;
+        mMultiplier = builder.multiplier;
+        mJitter = builder.jitter;
+        mRetryOn = builder.retryOn;
+    }
+    
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+    
+    /**
+     * Пауза перед следующей попыткой в наносекундах, или -1 если больше не повторять.
+     *
+     * @param attempts Сколько попыток уже сделано, включая неудачную.
+     * @param cause    Исключение неудачной попытки.
+     */
+    public long nextDelayNanos(int attempts, Exception cause) {
+        if (attempts >= mMaxAttempts || cause instanceof CancellationException
+                || cause instanceof InterruptedException || !mRetryOn.test(cause)) {
+            return -1;
+        }
+        final double backoff = Math.min(mMaxDelayNanos, mInitialDelayNanos * Math.pow(mMultiplier, attempts - 1));
+        final double jitter = mJitter * ThreadLocalRandom.current().nextDouble();
+        return (long) (backoff * (1.0 - jitter));
+    }
+    
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+    
+    public static final class Builder {
+        private int maxAttempts = 3;
+        private long initialDelayNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        private long maxDelayNanos = TimeUnit.SECONDS.toNanos(30);
+        private double multiplier = 2.0;
+        private double jitter = 0.5;
+        private Predicate<? super Exception> retryOn = cause -> !(cause instanceof RuntimeException);
+        
+        Builder() {
+        }
+        
+        /**
+         * Сколько всего попыток, включая первую. По умолчанию 3.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts <= 0) {
+                throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+        
+        /**
+         * Пауза перед второй попыткой и предел, до которого она растет.
+         * По умолчанию от 100 миллисекунд до 30 секунд.
+         */
+        public Builder backoff(long initialDelay, long maxDelay, TimeUnit unit) {
+            if (initialDelay < 0 || maxDelay < initialDelay) {
+                throw new IllegalArgumentException("Invalid backoff: [" + initialDelay + ", " + maxDelay + "]");
+            }
+            initialDelayNanos = unit.toNanos(initialDelay);
+            maxDelayNanos = unit.toNanos(maxDelay);
+            return this;
+        }
+        
+        /**
+         * Во сколько раз растет пауза с каждой попыткой. По умолчанию 2.
+         */
+        public Builder multiplier(double multiplier) {
+            if (multiplier < 1.0) {
+                throw new IllegalArgumentException("multiplier must be at least 1: " + multiplier);
+            }
+            this.multiplier = multiplier;
+            return this;
+        }
+        
+        /**
+         * Какую долю паузы можно случайно срезать, от 0 до 1. По умолчанию 0.5.
+         */
+        public Builder jitter(double jitter) {
+            if (jitter < 0.0 || jitter > 1.0) {
+                throw new IllegalArgumentException("jitter must be within [0, 1]: " + jitter);
+            }
+            this.jitter = jitter;
+            return this;
+        }
+        
+        /**
+         * Повторять только при исключениях, для которых predicate вернет true.
+         * По умолчанию повторяются только проверяемые исключения: RuntimeException
+         * Обычно означает ошибку в коде, и новая попытка ее не исправит.
+         */
+        public Builder retryOn(Predicate<? super Exception> predicate) {
+            retryOn = Objects.requireNonNull(predicate, "predicate cannot be null");
+            return this;
+        }
+        
+        /**
+         * Повторять только при исключениях указанных типов.
+         */
+        @SafeVarargs
+        public final Builder retryOn(Class<? extends Exception>... types) {
+            // Копируем поштучно, чтобы сам массив varargs никуда не утекал.
+            final List<Class<? extends Exception>> copy = new ArrayList<>(types.length);
+            for (Class<? extends Exception> type : types) {
+                copy.add(Objects.requireNonNull(type, "type cannot be null"));
+            }
+            return retryOn(cause -> {
+                for (Class<? extends Exception> type : copy) {
+                    if (type.isInstance(cause)) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+        
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс приоритета задачи.
+ *
+ * <p>
+ * Каждому классу соответствует окно ожидания: задача должна стартовать
+ * Не позже, чем через это время после запуска. Планировщик выбирает задачу
+ * С самым ранним сроком, поэтому низкий приоритет со временем "стареет"
+ * И не может ждать бесконечно позади высокого.
+ * </p>
+ *
+ * @see ITaskService#setPriority(TaskPriority)
+ * @see io.fluffydaddy.jtasks.execution.ExecutorPriority
+ */
+public enum TaskPriority {
+    /**
+     * Задачи, которые ждет пользователь прямо сейчас.
+     */
+    CRITICAL(0),
+    
+    /**
+     * Интерактивные задачи.
+     */
+    HIGH(10),
+    
+    /**
+     * Приоритет по умолчанию.
+     */
+    NORMAL(100),
+    
+    /**
+     * Фоновые задачи.
+     */
+    LOW(1000),
+    
+    /**
+     * Массовые фоновые передачи данных.
+     */
+    BULK(10000);
+    
+    private final long mAgingMillis;
+    
+    TaskPriority(long agingMillis) {
+        mAgingMillis = agingMillis;
+    }
+    
+    /**
+     * Окно ожидания в наносекундах.
+     */
+    public long getAgingNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(mAgingMillis);
+    }
+}
@@ -16,6 +16,11 @@
 
 package io.fluffydaddy.jtasks.core;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Класс является информатором жизненного цикла задачи.
  *
@@ -69,10 +74,64 @@ public enum TrackState {
      */
     EXCEPTED,
     
+    /**
+     * Состояние когда попытка задачи упала и следующая ждет своей паузы.
+     *
+     * @see RetryPolicy
+     */
+    RETRYING,
+    
+    /**
+     * Состояние когда задача задержалась и рядом запущена ее копия.
+     *
+     * @see HedgePolicy
+     */
+    HEDGING,
+    
     /**
      * Состояние когда задаче пришло событие на прерывание своего цикла.
      *
      * @see ITaskService#onTerminate()
      */
     TERMINATED;
+    
+    private static final Map<TrackState, Set<TrackState>> TRANSITIONS = new EnumMap<>(TrackState.class);
+    
+    static {
+        // Идущий запуск: трекер может подключиться или отключиться, попытка может
+        // Уйти на повтор или подстраховку, а затем запуск чем-то заканчивается.
+        TRANSITIONS.put(TRACKING, EnumSet.of(SUBMITTED, UNTRACKED, RETRYING, HEDGING,
+                FINISHED, EXCEPTED, CANCELED, TERMINATED));
+        TRANSITIONS.put(SUBMITTED, EnumSet.of(TRACKING, UNTRACKED, RETRYING, HEDGING,
+                FINISHED, EXCEPTED, CANCELED, TERMINATED));
+        TRANSITIONS.put(UNTRACKED, EnumSet.of(TRACKING, SUBMITTED, RETRYING, HEDGING,
+                FINISHED, EXCEPTED, CANCELED, TERMINATED));
+        TRANSITIONS.put(RETRYING, EnumSet.of(SUBMITTED, UNTRACKED, HEDGING,
+                FINISHED, EXCEPTED, CANCELED, TERMINATED));
+        TRANSITIONS.put(HEDGING, EnumSet.of(SUBMITTED, UNTRACKED, RETRYING,
+                FINISHED, EXCEPTED, CANCELED, TERMINATED));
+        // Отмену, которую задача не услышала, можно довести уничтожением.
+        TRANSITIONS.put(CANCELED, EnumSet.of(TERMINATED));
+        TRANSITIONS.put(EXCEPTED, EnumSet.noneOf(TrackState.class));
+        TRANSITIONS.put(FINISHED, EnumSet.noneOf(TrackState.class));
+        TRANSITIONS.put(TERMINATED, EnumSet.noneOf(TrackState.class));
+    }
+    
+    /**
+     * Можно ли перейти из этого состояния в следующее. Переходы, которых нет в таблице,
+     * Запрещены: FINISHED, EXCEPTED и TERMINATED конечны, а из CANCELED можно только
+     * Уничтожить задачу. Новый запуск начинает состояния заново, это не переход.
+     *
+     * @see ITaskService#setState(TrackState)
+     */
+    public boolean canMoveTo(TrackState next) {
+        return TRANSITIONS.get(this).contains(next);
+    }
+    
+    /**
+     * Запуск закончился тем или иным исходом.
+     */
+    public boolean isFinal() {
+        return this == FINISHED || this == EXCEPTED || this == CANCELED || this == TERMINATED;
+    }
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.execution;
+
+import io.fluffydaddy.annotation.NonNull;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grows and shrinks the core size of a {@link ThreadPoolExecutor} at runtime.
+ * <p>
+ * Every sample period the sizer looks at the queue length, the number of busy workers and
+ * how many commands completed since the last sample. The queue wait is estimated with
+ * Little's law, queue length divided by throughput, so commands do not have to be wrapped
+ * or timestamped. While commands wait longer than the target and workers are busy, the pool
+ * grows. Once the queue stays empty and workers are mostly idle, it shrinks one thread at a
+ * time. The size always stays within the configured bounds.
+ * <p>
+ * Sampling runs on the {@linkplain ExecutorTimer#getDefaultTimer() default timer}.
+ */
+public class AdaptivePoolSizer {
+    public static final long DEFAULT_SAMPLE_PERIOD_MILLIS = 250;
+    public static final long DEFAULT_TARGET_QUEUE_WAIT_MILLIS = 20;
+
+    private static final double BUSY_UTILIZATION = 0.75;
+    private static final double IDLE_UTILIZATION = 0.5;
+    private static final int IDLE_SAMPLES_TO_SHRINK = 3;
+
+    public enum Decision {
+        HOLD, GROW, SHRINK
+    }
+
+    /**
+     * What the sizer saw at its last sample and what it did about it.
+     */
+    public static final class Stats {
+        public final int corePoolSize;
+        public final int poolSize;
+        public final int activeCount;
+        public final int queueSize;
+        public final double utilization;
+        public final long queueWaitNanos;
+        public final double throughputPerSecond;
+        public final Decision lastDecision;
+        public final long grows;
+        public final long shrinks;
+
+        Stats(int corePoolSize, int poolSize, int activeCount, int queueSize, double utilization,
+              long queueWaitNanos, double throughputPerSecond, Decision lastDecision, long grows, long shrinks) {
+            this.corePoolSize = corePoolSize;
+            this.poolSize = poolSize;
+            this.activeCount = activeCount;
+            this.queueSize = queueSize;
+            this.utilization = utilization;
+            this.queueWaitNanos = queueWaitNanos;
+            this.throughputPerSecond = throughputPerSecond;
+            this.lastDecision = lastDecision;
+            this.grows = grows;
+            this.shrinks = shrinks;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{core=" + corePoolSize
+                    + ", pool=" + poolSize
+                    + ", active=" + activeCount
+                    + ", queue=" + queueSize
+                    + ", utilization=" + String.format("%.2f", utilization)
+                    + ", queueWait=" + TimeUnit.NANOSECONDS.toMillis(queueWaitNanos) + "ms"
+                    + ", throughput=" + String.format("%.1f", throughputPerSecond) + "/s"
+                    + ", decision=" + lastDecision
+                    + ", grows=" + grows
+                    + ", shrinks=" + shrinks + '}';
+        }
+    }
+
+    private final ThreadPoolExecutor mExecutor;
+    private final int mMinThreads;
+    private final int mMaxThreads;
+
+    private volatile long mSamplePeriodNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SAMPLE_PERIOD_MILLIS);
+    private volatile long mTargetQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TARGET_QUEUE_WAIT_MILLIS);
+
+    private int mBaseMaximumPoolSize;
+    private volatile ExecutorTimer.Timeout mNextSample;
+    private volatile Stats mStats;
+
+    // Only touched by the sampling thread.
+    private long mLastSampleNanos;
+    private long mLastCompleted;
+    private int mIdleSamples;
+    private long mGrows;
+    private long mShrinks;
+
+    public AdaptivePoolSizer(ThreadPoolExecutor executor, int minThreads, int maxThreads) {
+        if (minThreads <= 0 || maxThreads < minThreads) {
+            throw new IllegalArgumentException("Invalid bounds: [" + minThreads + ", " + maxThreads + "]");
+        }
+        mExecutor = Objects.requireNonNull(executor, "executor cannot be null");
+        mMinThreads = minThreads;
+        mMaxThreads = maxThreads;
+    }
+
+    public void setSamplePeriod(long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        mSamplePeriodNanos = unit.toNanos(period);
+    }
+
+    /**
+     * Queue wait above which the pool grows.
+     */
+    public void setTargetQueueWait(long wait, TimeUnit unit) {
+        mTargetQueueWaitNanos = unit.toNanos(wait);
+    }
+
+    /**
+     * Starts sampling and clamps the core size into the bounds. The maximum pool size
+     * follows the core size once it grows past the maximum the executor had at start.
+     */
+    public synchronized void start() {
+        if (mNextSample != null) {
+            return;
+        }
+        mBaseMaximumPoolSize = Math.min(mMaxThreads, mExecutor.getMaximumPoolSize());
+        resize(Math.max(mMinThreads, Math.min(mMaxThreads, mExecutor.getCorePoolSize())));
+        mLastSampleNanos = System.nanoTime();
+        mLastCompleted = mExecutor.getCompletedTaskCount();
+        scheduleSample();
+    }
+
+    public synchronized void stop() {
+        final ExecutorTimer.Timeout next = mNextSample;
+        if (next != null) {
+            next.cancel();
+        }
+        mNextSample = null;
+    }
+
+    public boolean isRunning() {
+        return mNextSample != null;
+    }
+
+    public ThreadPoolExecutor getExecutor() {
+        return mExecutor;
+    }
+
+    public int getMinThreads() {
+        return mMinThreads;
+    }
+
+    public int getMaxThreads() {
+        return mMaxThreads;
+    }
+
+    /**
+     * Returns the result of the last sample, or null before the first one.
+     */
+    public Stats getStats() {
+        return mStats;
+    }
+
+    private void scheduleSample() {
+        mNextSample = ExecutorTimer.getDefaultTimer().schedule(this::sample, mSamplePeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void sample() {
+        if (mNextSample == null || mExecutor.isShutdown()) {
+            mNextSample = null;
+            return;
+        }
+        final long now = System.nanoTime();
+        final long completed = mExecutor.getCompletedTaskCount();
+        final long elapsed = Math.max(1L, now - mLastSampleNanos);
+        final long done = completed - mLastCompleted;
+        mLastSampleNanos = now;
+        mLastCompleted = completed;
+
+        final int core = mExecutor.getCorePoolSize();
+        final int active = mExecutor.getActiveCount();
+        final int queued = mExecutor.getQueue().size();
+        final double utilization = (double) active / core;
+        final double throughput = done * 1e9 / elapsed;
+        final long queueWait = queued == 0 ? 0
+                : done == 0 ? elapsed : (long) (queued * (double) elapsed / done);
+
+        Decision decision = Decision.HOLD;
+        if (queued > 0 && queueWait > mTargetQueueWaitNanos && utilization >= BUSY_UTILIZATION) {
+            mIdleSamples = 0;
+            if (core < mMaxThreads) {
+                resize(Math.min(mMaxThreads, core + Math.max(1, core / 4)));
+                mGrows++;
+                decision = Decision.GROW;
+            }
+        } else if (queued == 0 && utilization < IDLE_UTILIZATION) {
+            if (++mIdleSamples >= IDLE_SAMPLES_TO_SHRINK && core > mMinThreads) {
+                mIdleSamples = 0;
+                resize(core - 1);
+                mShrinks++;
+                decision = Decision.SHRINK;
+            }
+        } else {
+            mIdleSamples = 0;
+        }
+
+        mStats = new Stats(mExecutor.getCorePoolSize(), mExecutor.getPoolSize(), active, queued,
+                utilization, queueWait, throughput, decision, mGrows, mShrinks);
+        scheduleSample();
+    }
+
+    private void resize(int core) {
+        final int maximum = Math.max(core, mBaseMaximumPoolSize);
+        // The core size may never exceed the maximum, even for a moment.
+        if (maximum > mExecutor.getMaximumPoolSize()) {
+            mExecutor.setMaximumPoolSize(maximum);
+            mExecutor.setCorePoolSize(core);
+        } else {
+            mExecutor.setCorePoolSize(core);
+            mExecutor.setMaximumPoolSize(maximum);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "AdaptivePoolSizer{[" + mMinThreads + ", " + mMaxThreads + "], " + mStats + '}';
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.execution;
+
+import io.fluffydaddy.annotation.NonNull;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link Executor} that hands commands to a target executor in chunks.
+ * <p>
+ * Commands are buffered and drained by at most {@code parallelism} drainers, each of them a
+ * single command on the target that runs up to {@code chunkSize} buffered commands in a row.
+ * Submitting many small commands therefore costs one hop to the target per chunk instead of
+ * one per command.
+ * <p>
+ * If the target refuses a drainer and no other drainer is running, {@link #execute(Runnable)}
+ * takes its command back out of the buffer before it throws, so a rejected command never runs.
+ * Commands that other callers buffered meanwhile are retried from the timer.
+ */
+public class ExecutorBatch implements Executor {
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+    // Pause before buffered commands whose drainer was refused try the target again.
+    private static final long REARM_DELAY_MILLIS = 10;
+
+    private final Executor mTarget;
+    private final int mParallelism;
+    private final int mChunkSize;
+    private final Queue<Runnable> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mDrainers = new AtomicInteger();
+    private final Runnable mDrain = this::drain;
+    private final Runnable mRearm = this::retryDrain;
+
+    public ExecutorBatch(Executor target, int parallelism, int chunkSize) {
+        if (parallelism <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("parallelism and chunkSize must be positive");
+        }
+        mTarget = Objects.requireNonNull(target, "target cannot be null");
+        mParallelism = parallelism;
+        mChunkSize = chunkSize;
+    }
+
+    public ExecutorBatch(ExecutorPool pool) {
+        this(pool, pool.getPoolSize(), DEFAULT_CHUNK_SIZE);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        mQueue.offer(Objects.requireNonNull(command, "command cannot be null"));
+        final RejectedExecutionException rejected = scheduleDrain();
+        if (rejected == null) {
+            return;
+        }
+        mDrainers.decrementAndGet();
+        // If a running drainer already took the command, it was accepted after all.
+        final boolean withdrawn = mQueue.remove(command);
+        if (!mQueue.isEmpty()) {
+            rearm();
+        }
+        if (withdrawn) {
+            throw rejected;
+        }
+    }
+
+    /**
+     * Number of commands waiting for a drainer.
+     */
+    public int getQueueSize() {
+        return mQueue.size();
+    }
+
+    /*
+     * Starts a drainer if commands are waiting and a slot is free. Returns the target's
+     * rejection, in which case the caller still holds the drainer slot it took.
+     */
+    private RejectedExecutionException scheduleDrain() {
+        while (!mQueue.isEmpty()) {
+            final int drainers = mDrainers.get();
+            if (drainers >= mParallelism) {
+                // A running drainer re-checks the queue after it finishes.
+                return null;
+            }
+            if (mDrainers.compareAndSet(drainers, drainers + 1)) {
+                try {
+                    mTarget.execute(mDrain);
+                } catch (RejectedExecutionException e) {
+                    return e;
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void drain() {
+        boolean completed = false;
+        try {
+            do {
+                runChunk();
+                mDrainers.decrementAndGet();
+                // A refused hop leaves the slot with us; this thread belongs to the target, keep going.
+            } while (scheduleDrain() != null);
+            completed = true;
+        } finally {
+            if (!completed) {
+                mDrainers.decrementAndGet();
+                retryDrain();
+            }
+        }
+    }
+
+    private void runChunk() {
+        for (int i = 0; i < mChunkSize; i++) {
+            final Runnable command = mQueue.poll();
+            if (command == null) {
+                break;
+            }
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    private void retryDrain() {
+        if (scheduleDrain() != null) {
+            mDrainers.decrementAndGet();
+            rearm();
+        }
+    }
+
+    /*
+     * Retries from the timer thread, which never runs the commands itself.
+     * A target that was shut down will never take them, so nothing is re-armed.
+     */
+    private void rearm() {
+        if (mTarget instanceof ExecutorService && ((ExecutorService) mTarget).isShutdown()
+                || mTarget instanceof ExecutorPool && ((ExecutorPool) mTarget).isShutdown()) {
+            return;
+        }
+        ExecutorTimer.getDefaultTimer().schedule(mRearm, REARM_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -27,6 +27,7 @@ public abstract class ExecutorFactory implements ThreadFactory {
     private Thread.UncaughtExceptionHandler _crashHandler;
     private String _name;
     private boolean _daemon;
+    private boolean _virtual;
     
     public ExecutorFactory(ThreadFactory defFactory) {
         mFactory = defFactory;
@@ -46,7 +47,9 @@ public abstract class ExecutorFactory implements ThreadFactory {
     
     @Override
     public Thread newThread(@NonNull Runnable command) {
-        Thread thread = mFactory.newThread(command);
+        Thread thread = isVirtualSupported()
+                ? VirtualThreads.newThread(command)
+                : mFactory.newThread(command);
         
         if (_crashHandler != null) {
             thread.setUncaughtExceptionHandler(_crashHandler);
@@ -86,4 +89,25 @@ public abstract class ExecutorFactory implements ThreadFactory {
     public boolean isDaemon() {
         return _daemon;
     }
+    
+    /**
+     * Opt-in to virtual threads. Has no effect on runtimes without them,
+     * Where platform threads from the default factory are used instead.
+     *
+     * @see VirtualThreads#isSupported()
+     */
+    public void setVirtual(boolean on) {
+        _virtual = on;
+    }
+    
+    public boolean isVirtual() {
+        return _virtual;
+    }
+    
+    /**
+     * Returns true if threads from this factory are actually virtual.
+     */
+    public boolean isVirtualSupported() {
+        return _virtual && VirtualThreads.isSupported();
+    }
 }
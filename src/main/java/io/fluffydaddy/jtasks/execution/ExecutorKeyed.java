@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.execution;
+
+import io.fluffydaddy.annotation.NonNull;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs commands in submission order per key, while different keys run in parallel.
+ * <p>
+ * Each key that has pending work owns a lane: a queue plus an atomic count of reserved
+ * commands. Whoever moves the count from zero starts a drainer on the target executor, and
+ * there is at most one drainer per lane, so no lock is ever taken per key. A drainer runs up
+ * to {@code batchSize} commands per hop and then re-submits itself, so one busy key cannot
+ * occupy a pool thread forever. When a lane runs out of work it retires and is removed from
+ * the map, so idle keys cost nothing.
+ * <p>
+ * If the target refuses to start a drainer, the drainer runs in the submitting thread instead.
+ * This way the lane is never left without a drainer.
+ */
+public class ExecutorKeyed<K> {
+    public static final int DEFAULT_BATCH_SIZE = 16;
+
+    private static final int RETIRED = -1;
+
+    private final Executor mExecutor;
+    private final int mBatchSize;
+    private final ConcurrentHashMap<K, Lane> mLanes = new ConcurrentHashMap<>();
+
+    public ExecutorKeyed(Executor executor, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        mExecutor = Objects.requireNonNull(executor, "executor cannot be null");
+        mBatchSize = batchSize;
+    }
+
+    public ExecutorKeyed(Executor executor) {
+        this(executor, DEFAULT_BATCH_SIZE);
+    }
+
+    public ExecutorKeyed() {
+        this(ExecutorPool.getDefaultPool());
+    }
+
+    public void execute(@NonNull K key, @NonNull Runnable command) {
+        Objects.requireNonNull(key, "key cannot be null");
+        Objects.requireNonNull(command, "command cannot be null");
+        while (true) {
+            final Lane lane = mLanes.computeIfAbsent(key, Lane::new);
+            if (lane.offer(command)) {
+                return;
+            }
+            // The lane retired between the lookup and the offer; help remove it and retry.
+            mLanes.remove(key, lane);
+        }
+    }
+
+    /**
+     * Returns an {@link Executor} that submits everything under the given key.
+     */
+    @NonNull
+    public Executor forKey(@NonNull final K key) {
+        Objects.requireNonNull(key, "key cannot be null");
+        return command -> execute(key, command);
+    }
+
+    /**
+     * Number of keys that currently have pending or running work.
+     */
+    public int getActiveLanes() {
+        return mLanes.size();
+    }
+
+    private final class Lane implements Runnable {
+        private final K mKey;
+        private final Queue<Runnable> mQueue = new ConcurrentLinkedQueue<>();
+        // Reserved commands, including the one being run, or RETIRED.
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        Lane(K key) {
+            mKey = key;
+        }
+
+        boolean offer(Runnable command) {
+            while (true) {
+                final int count = mCount.get();
+                if (count == RETIRED) {
+                    return false;
+                }
+                if (mCount.compareAndSet(count, count + 1)) {
+                    mQueue.offer(command);
+                    if (count == 0 && !submit()) {
+                        // The pool is saturated; drain on the producer instead.
+                        run();
+                    }
+                    return true;
+                }
+            }
+        }
+
+        private boolean submit() {
+            try {
+                mExecutor.execute(this);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int ran = 0; ; ) {
+                boolean completed = false;
+                try {
+                    runCommand(poll());
+                    completed = true;
+                } finally {
+                    if (!completed && !release() && !submit()) {
+                        // An Error is escaping: hand the rest of the lane on before it
+                        // propagates, or the key would never run again.
+                        run();
+                    }
+                }
+                if (release()) {
+                    return;
+                }
+                if (++ran >= mBatchSize) {
+                    if (submit()) {
+                        return;
+                    }
+                    // Rejected: keep draining here in a loop rather than recursing.
+                    ran = 0;
+                }
+            }
+        }
+
+        /*
+         * Gives back the slot of the command that just ran. Returns true if that
+         * was the last one and the lane retired.
+         */
+        private boolean release() {
+            if (mCount.compareAndSet(1, RETIRED)) {
+                mLanes.remove(mKey, this);
+                return true;
+            }
+            mCount.decrementAndGet();
+            return false;
+        }
+
+        /*
+         * A producer reserves its slot before it offers, so the command may be
+         * a moment late. The window is a few instructions long.
+         */
+        private Runnable poll() {
+            Runnable command;
+            while ((command = mQueue.poll()) == null) {
+                Thread.yield();
+            }
+            return command;
+        }
+
+        private void runCommand(Runnable command) {
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+}
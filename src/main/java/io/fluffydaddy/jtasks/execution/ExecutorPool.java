@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.execution;
+
+import io.fluffydaddy.annotation.NonNull;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of worker threads shared by many tasks.
+ * <p>
+ * Workers are created through an {@link ExecutorFactory}, so its name, daemon flag and crash
+ * handler apply to every pooled thread. Daemon and non-daemon work run on separate lanes,
+ * each of them bounded by the pool size. Idle workers die after the keep-alive time, so an
+ * unused pool holds no threads.
+ * <p>
+ * If the factory is {@linkplain ExecutorFactory#setVirtual(boolean) virtual} and the runtime
+ * supports it, every command gets its own virtual thread instead and the pool size is ignored.
+ * <p>
+ * CPU-bound subtasks go to a separate work-stealing {@link ForkJoinPool} sized to the number
+ * of processors, see {@link #getForkJoinPool()}.
+ */
+public class ExecutorPool implements Executor {
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_POOL_SIZE = Math.max(4, CPU_COUNT * 2);
+    public static final long DEFAULT_KEEP_ALIVE_SECONDS = 30;
+
+    private static final String DEFAULT_NAME = "Task";
+
+    private static volatile ExecutorPool sDefaultPool;
+
+    private final ExecutorFactory mFactory;
+    private final int mPoolSize;
+    private final long mKeepAliveMillis;
+    private final Lock mLock = new ReentrantLock();
+
+    private volatile ExecutorService mExecutor;
+    private volatile ExecutorService mDaemonExecutor;
+    private volatile ForkJoinPool mForkJoinPool;
+    private volatile boolean mShutdown;
+
+    public ExecutorPool(ExecutorFactory factory, int poolSize, long keepAlive, TimeUnit unit) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize must be positive: " + poolSize);
+        }
+        mFactory = Objects.requireNonNull(factory, "factory cannot be null");
+        mPoolSize = poolSize;
+        mKeepAliveMillis = unit.toMillis(keepAlive);
+    }
+
+    public ExecutorPool(ExecutorFactory factory, int poolSize) {
+        this(factory, poolSize, DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public ExecutorPool(int poolSize) {
+        this(new ExecutorFactory() {}, poolSize);
+    }
+
+    public ExecutorPool() {
+        this(DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Returns the process-wide pool used by tasks that were not given one explicitly.
+     */
+    @NonNull
+    public static ExecutorPool getDefaultPool() {
+        if (sDefaultPool != null) {
+            return sDefaultPool;
+        }
+        synchronized (ExecutorPool.class) {
+            if (sDefaultPool == null) {
+                sDefaultPool = new ExecutorPool();
+            }
+        }
+        return sDefaultPool;
+    }
+
+    /**
+     * Creates a pool that runs every command on its own virtual thread,
+     * or a regular bounded pool if virtual threads are not supported.
+     */
+    @NonNull
+    public static ExecutorPool newVirtualPool(String name) {
+        ExecutorFactory factory = new ExecutorFactory() {};
+        factory.setName(name);
+        factory.setVirtual(true);
+        return new ExecutorPool(factory, DEFAULT_POOL_SIZE);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        execute(command, mFactory.isDaemon());
+    }
+
+    /**
+     * Executes the command on the daemon or the non-daemon lane of the pool.
+     */
+    public void execute(@NonNull Runnable command, boolean daemon) {
+        getExecutor(daemon || isVirtual()).execute(command);
+    }
+
+    /**
+     * Stops accepting new work. Already queued commands still run.
+     */
+    public void shutdown() {
+        mLock.lock();
+        try {
+            mShutdown = true;
+            if (mExecutor != null) {
+                mExecutor.shutdown();
+            }
+            if (mDaemonExecutor != null) {
+                mDaemonExecutor.shutdown();
+            }
+            if (mForkJoinPool != null) {
+                mForkJoinPool.shutdown();
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the work-stealing pool for subtasks forked by tasks running on this pool.
+     */
+    @NonNull
+    public ForkJoinPool getForkJoinPool() {
+        ForkJoinPool pool = mForkJoinPool;
+        if (pool != null) {
+            return pool;
+        }
+        mLock.lock();
+        try {
+            if (mForkJoinPool == null) {
+                mForkJoinPool = newForkJoinPool();
+                if (mShutdown) {
+                    mForkJoinPool.shutdown();
+                }
+            }
+            return mForkJoinPool;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public boolean isShutdown() {
+        return mShutdown;
+    }
+
+    public ExecutorFactory getFactory() {
+        return mFactory;
+    }
+
+    public int getPoolSize() {
+        return mPoolSize;
+    }
+
+    /**
+     * Returns true if commands run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return mFactory.isVirtualSupported();
+    }
+
+    /**
+     * Number of workers currently alive on both lanes.
+     */
+    public int getActiveThreads() {
+        return getActiveThreads(mExecutor) + getActiveThreads(mDaemonExecutor);
+    }
+
+    private static int getActiveThreads(ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getPoolSize();
+        }
+        return 0;
+    }
+
+    private ExecutorService getExecutor(boolean daemon) {
+        ExecutorService executor = daemon ? mDaemonExecutor : mExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        mLock.lock();
+        try {
+            executor = daemon ? mDaemonExecutor : mExecutor;
+            if (executor == null) {
+                executor = newExecutor(daemon);
+                if (mShutdown) {
+                    executor.shutdown();
+                }
+                if (daemon) {
+                    mDaemonExecutor = executor;
+                } else {
+                    mExecutor = executor;
+                }
+            }
+            return executor;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private ExecutorService newExecutor(boolean daemon) {
+        if (isVirtual()) {
+            return VirtualThreads.newThreadPerTaskExecutor(newLaneFactory(true));
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                mPoolSize, mPoolSize, mKeepAliveMillis, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), newLaneFactory(daemon));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private ForkJoinPool newForkJoinPool() {
+        final AtomicInteger count = new AtomicInteger(1);
+        final String prefix = mFactory.getName() != null ? mFactory.getName() : DEFAULT_NAME;
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(prefix + " fork #" + count.getAndIncrement());
+            return thread;
+        };
+        return new ForkJoinPool(CPU_COUNT, factory, mFactory.getCrashHandler(), false);
+    }
+
+    private ThreadFactory newLaneFactory(final boolean daemon) {
+        final AtomicInteger count = new AtomicInteger(1);
+        final String prefix = mFactory.getName() != null ? mFactory.getName() : DEFAULT_NAME;
+        return command -> {
+            Thread thread = mFactory.newThread(command);
+            thread.setName(prefix + " #" + count.getAndIncrement());
+            if (thread.isDaemon() != daemon) {
+                thread.setDaemon(daemon);
+            }
+            return thread;
+        };
+    }
+}
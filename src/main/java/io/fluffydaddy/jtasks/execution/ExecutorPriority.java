@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.execution;
+
+import io.fluffydaddy.annotation.NonNull;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link Executor} that runs the queued command with the earliest deadline first.
+ * <p>
+ * Commands implementing {@link Schedulable} bring their own deadline; any other command is
+ * due {@link #DEFAULT_WINDOW_MILLIS} after it was queued. Since priorities are expressed as
+ * deadlines, waiting low-priority work eventually becomes the earliest and cannot starve.
+ * Commands with equal deadlines run in submission order.
+ */
+public class ExecutorPriority implements Executor {
+    public static final long DEFAULT_WINDOW_MILLIS = 100;
+
+    private static final class Entry implements Runnable, Comparable<Entry> {
+        final Runnable mCommand;
+        final long mDeadline;
+        final long mSequence;
+
+        Entry(Runnable command, long deadline, long sequence) {
+            mCommand = command;
+            mDeadline = deadline;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            mCommand.run();
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            // nanoTime may overflow, so compare the difference.
+            final long diff = mDeadline - other.mDeadline;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return Long.compare(mSequence, other.mSequence);
+        }
+    }
+
+    private final ThreadPoolExecutor mExecutor;
+    private final AtomicLong mSequence = new AtomicLong();
+    private final long mDefaultWindowNanos;
+
+    public ExecutorPriority(ExecutorFactory factory, int poolSize, long defaultWindow, TimeUnit unit) {
+        Objects.requireNonNull(factory, "factory cannot be null");
+        final AtomicInteger count = new AtomicInteger(1);
+        final String prefix = factory.getName() != null ? factory.getName() : "Priority";
+        mExecutor = new ThreadPoolExecutor(poolSize, poolSize,
+                ExecutorPool.DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), command -> {
+                    Thread thread = factory.newThread(command);
+                    thread.setName(prefix + " #" + count.getAndIncrement());
+                    return thread;
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+        mDefaultWindowNanos = unit.toNanos(defaultWindow);
+    }
+
+    public ExecutorPriority(int poolSize) {
+        this(new ExecutorFactory() {}, poolSize, DEFAULT_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public ExecutorPriority() {
+        this(ExecutorPool.DEFAULT_POOL_SIZE);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        final long deadline = command instanceof Schedulable
+                ? ((Schedulable) command).getDeadlineNanos()
+                : System.nanoTime() + mDefaultWindowNanos;
+        mExecutor.execute(new Entry(command, deadline, mSequence.getAndIncrement()));
+    }
+
+    /**
+     * Number of commands waiting for a worker.
+     */
+    public int getQueueSize() {
+        return mExecutor.getQueue().size();
+    }
+
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
@@ -16,12 +16,16 @@
 
 package io.fluffydaddy.jtasks.execution;
 
-import java.util.ArrayDeque;
+import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ExecutorSerial implements Executor {
     private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
@@ -32,8 +36,15 @@ public class ExecutorSerial implements Executor {
     private static final int MAXIMUM_POOL_SIZE = CPU_COUNT * 2 + 1;
     private static final int KEEP_ALIVE_SECONDS = 30;
     
+    /**
+     * System property with the work queue capacity of {@link #THREAD_POOL_EXECUTOR}.
+     * It is read once, when this class is initialized.
+     */
+    public static final String QUEUE_CAPACITY_PROPERTY = "io.fluffydaddy.jtasks.serial.queueCapacity";
+    public static final int DEFAULT_QUEUE_CAPACITY = 128;
+    
     private static final BlockingQueue<Runnable> sPoolWorkQueue =
-            new LinkedBlockingQueue<>(128);
+            new LinkedBlockingQueue<>(Math.max(1, Integer.getInteger(QUEUE_CAPACITY_PROPERTY, DEFAULT_QUEUE_CAPACITY)));
     
     /**
      * An {@link Executor} that can be used to execute tasks in parallel.
@@ -43,30 +54,217 @@ public class ExecutorSerial implements Executor {
     static {
         ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
                 CORE_POOL_SIZE, MAXIMUM_POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
-                sPoolWorkQueue);
+                sPoolWorkQueue, RejectionPolicy.abort());
         threadPoolExecutor.allowCoreThreadTimeOut(true);
         THREAD_POOL_EXECUTOR = threadPoolExecutor;
     }
     
-    final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
-    Runnable mActive;
+    private static volatile AdaptivePoolSizer sPoolSizer;
+    
+    /**
+     * Upper bound on commands run per hop to the pool before the drainer yields its thread.
+     */
+    public static final int MAX_BATCH_SIZE = 32;
+    
+    // Pause before a serial whose hop was dropped or refused tries the pool again.
+    private static final long REARM_DELAY_MILLIS = 10;
+    
+    private static final int IDLE = 0;
+    private static final int DRAINING = 1;
+    
+    final Executor mExecutor;
+    // Set by whoever wins the IDLE -> DRAINING race; that thread alone consumes the queue.
+    private final AtomicInteger mState = new AtomicInteger(IDLE);
+    // Consumed by the current drainer, handed to the next one through mState and the pool.
+    private final MpscQueue<Runnable> mQueue = new MpscQueue<>();
+    private final Drainer mDrainer = new Drainer();
+    private final Runnable mRearm = this::scheduleNext;
+    
+    public ExecutorSerial() {
+        this(THREAD_POOL_EXECUTOR);
+    }
+    
+    /**
+     * Runs the commands one at a time on the given executor instead of {@link #THREAD_POOL_EXECUTOR}.
+     */
+    public ExecutorSerial(Executor executor) {
+        mExecutor = Objects.requireNonNull(executor, "executor cannot be null");
+    }
+    
+    /**
+     * Creates a pool sized like {@link #THREAD_POOL_EXECUTOR}, but with its own queue capacity
+     * and admission policy. Pass it to {@link #ExecutorSerial(Executor)}.
+     */
+    public static ThreadPoolExecutor newThreadPoolExecutor(int queueCapacity, RejectionPolicy policy) {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                CORE_POOL_SIZE, MAXIMUM_POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), Objects.requireNonNull(policy, "policy cannot be null"));
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+    
+    /**
+     * Decides what {@link #THREAD_POOL_EXECUTOR} does with a command once its queue is full.
+     * The default policy aborts.
+     */
+    public static void setRejectionPolicy(RejectionPolicy policy) {
+        THREAD_POOL_EXECUTOR.setRejectedExecutionHandler(Objects.requireNonNull(policy, "policy cannot be null"));
+    }
+    
+    public static RejectionPolicy getRejectionPolicy() {
+        RejectedExecutionHandler handler = THREAD_POOL_EXECUTOR.getRejectedExecutionHandler();
+        return handler instanceof RejectionPolicy ? (RejectionPolicy) handler : null;
+    }
+    
+    /**
+     * Lets {@link #THREAD_POOL_EXECUTOR} grow and shrink with the load, between the given
+     * number of threads. Replaces a sizer started earlier.
+     *
+     * @see AdaptivePoolSizer
+     */
+    public static AdaptivePoolSizer startAdaptiveSizing(int minThreads, int maxThreads) {
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(THREAD_POOL_EXECUTOR, minThreads, maxThreads);
+        synchronized (ExecutorSerial.class) {
+            stopAdaptiveSizing();
+            sPoolSizer = sizer;
+            sizer.start();
+        }
+        return sizer;
+    }
+    
+    /**
+     * Lets {@link #THREAD_POOL_EXECUTOR} grow up to four threads per processor.
+     */
+    public static AdaptivePoolSizer startAdaptiveSizing() {
+        return startAdaptiveSizing(CORE_POOL_SIZE, Math.max(MAXIMUM_POOL_SIZE, CPU_COUNT * 4));
+    }
+    
+    /**
+     * Stops resizing; {@link #THREAD_POOL_EXECUTOR} keeps its current size.
+     */
+    public static void stopAdaptiveSizing() {
+        synchronized (ExecutorSerial.class) {
+            if (sPoolSizer != null) {
+                sPoolSizer.stop();
+                sPoolSizer = null;
+            }
+        }
+    }
+    
+    /**
+     * Returns the running sizer of {@link #THREAD_POOL_EXECUTOR}, or null.
+     */
+    public static AdaptivePoolSizer getPoolSizer() {
+        return sPoolSizer;
+    }
     
-    public synchronized void execute(final Runnable r) {
-        mTasks.offer(() -> {
-            try {
-                r.run();
-            } finally {
-                scheduleNext();
+    /**
+     * Accepts every command. If the pool refuses the hop that would start draining, the
+     * command stays queued and the serial retries the pool from the timer until it gets in,
+     * so a saturated pool delays the serial instead of failing it.
+     */
+    public void execute(final Runnable r) {
+        mQueue.offer(Objects.requireNonNull(r, "command cannot be null"));
+        if (mState.get() == IDLE && mState.compareAndSet(IDLE, DRAINING)) {
+            if (!dispatch()) {
+                rearm();
             }
-        });
-        if (mActive == null) {
-            scheduleNext();
         }
     }
     
-    protected synchronized void scheduleNext() {
-        if ((mActive = mTasks.poll()) != null) {
-            THREAD_POOL_EXECUTOR.execute(mActive);
+    /**
+     * Called once the current drainer stopped running commands: either hands the
+     * rest of the queue to the next hop or goes idle. Never throws; a refused hop
+     * is retried later.
+     */
+    protected void scheduleNext() {
+        if (!handOff()) {
+            rearm();
+        }
+    }
+    
+    /*
+     * Returns false if the pool refused the next hop. The caller then still owns
+     * the queue and has to drain it or re-arm.
+     */
+    private boolean handOff() {
+        if (!mQueue.isEmpty()) {
+            return dispatch();
+        }
+        mState.set(IDLE);
+        // A producer may have linked its node after our check but lost the race
+        // for the state to us; it will not dispatch, so we have to.
+        if (!mQueue.isEmpty() && mState.compareAndSet(IDLE, DRAINING)) {
+            return dispatch();
+        }
+        return true;
+    }
+    
+    private boolean dispatch() {
+        try {
+            mExecutor.execute(mDrainer);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+    
+    /*
+     * Retries the hop later from the timer thread, without running any command there.
+     * A pool that was shut down will never take it, so the serial just goes idle.
+     */
+    private void rearm() {
+        if (mExecutor instanceof ExecutorService && ((ExecutorService) mExecutor).isShutdown()) {
+            mState.set(IDLE);
+            return;
+        }
+        ExecutorTimer.getDefaultTimer().schedule(mRearm, REARM_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    private final class Drainer implements RejectionPolicy.Droppable {
+        @Override
+        public void run() {
+            while (true) {
+                boolean completed = false;
+                try {
+                    for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+                        final Runnable command = mQueue.poll();
+                        if (command == null) {
+                            break;
+                        }
+                        command.run();
+                    }
+                    completed = true;
+                } finally {
+                    if (!completed) {
+                        // The command's exception goes on to the pool thread, the queue to the next hop.
+                        scheduleNext();
+                    }
+                }
+                if (handOff()) {
+                    return;
+                }
+                // The pool refused the next hop, but this thread is already one of its
+                // workers, so the serial keeps draining here.
+            }
+        }
+        
+        /*
+         * The drainer's slot in the pool stood for the whole backlog, so all of it goes.
+         * Nothing is dispatched from here: the freed slot belongs to the command whose
+         * rejection dropped us, and commands that arrive meanwhile wait for the timer.
+         */
+        @Override
+        public int onDropped() {
+            int dropped = 0;
+            while (mQueue.poll() != null) {
+                dropped++;
+            }
+            mState.set(IDLE);
+            if (!mQueue.isEmpty() && mState.compareAndSet(IDLE, DRAINING)) {
+                rearm();
+            }
+            return Math.max(1, dropped);
         }
     }
 }
@@ -21,6 +21,8 @@ import io.fluffydaddy.annotation.NonNull;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ExecutorSignal implements Executor {
     /**
@@ -32,18 +34,21 @@ public class ExecutorSignal implements Executor {
     private static volatile Executor sDefaultExecutor = SERIAL_EXECUTOR;
     
     private final Queue<Runnable> messageQueue = new LinkedList<>();
-    private final Object messageLock = new Object();
+    private final Lock messageLock = new ReentrantLock();
     private boolean isHandlingMessages = false;
     
     public void sendToTarget() {
         while (true) {
             Runnable runnable;
-            synchronized (messageLock) {
+            messageLock.lock();
+            try {
                 runnable = messageQueue.poll();
                 if (runnable == null) {
                     isHandlingMessages = false;
                     break;
                 }
+            } finally {
+                messageLock.unlock();
             }
             sDefaultExecutor.execute(runnable);
         }
@@ -51,12 +56,15 @@ public class ExecutorSignal implements Executor {
     
     @Override
     public void execute(@NonNull Runnable runnable) {
-        synchronized (messageLock) {
+        messageLock.lock();
+        try {
             messageQueue.offer(runnable);
             if (!isHandlingMessages) {
                 isHandlingMessages = true;
                 sendToTarget();
             }
+        } finally {
+            messageLock.unlock();
         }
     }
     
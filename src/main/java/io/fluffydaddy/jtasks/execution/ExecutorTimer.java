@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.execution;
+
+import io.fluffydaddy.annotation.NonNull;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel for large numbers of short-lived timeouts.
+ * <p>
+ * Scheduling and cancelling are O(1): both only enqueue the timeout, and the single timer
+ * thread moves it in or out of its wheel bucket on the next tick. Timeouts fire with the
+ * precision of one tick. Tasks run on the timer thread, so they must be short; hand anything
+ * heavier off to an executor. While nothing is scheduled the timer thread parks instead of
+ * ticking.
+ */
+public class ExecutorTimer {
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private static volatile ExecutorTimer sDefaultTimer;
+
+    /**
+     * A handle to a scheduled task.
+     */
+    public interface Timeout {
+        /**
+         * Cancels the task if it did not fire yet.
+         *
+         * @return true if this call cancelled it
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        boolean isExpired();
+    }
+
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+
+    private final ThreadFactory mThreadFactory;
+    private final long mTickDuration;
+    private final Bucket[] mWheel;
+    private final int mMask;
+
+    private final Queue<TimerTimeout> mTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<TimerTimeout> mCancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mWorkerState = new AtomicInteger(WORKER_INIT);
+    private final AtomicLong mPending = new AtomicLong();
+
+    private volatile Thread mWorkerThread;
+    private volatile boolean mIdle;
+    private long mStartTime;
+    private long mTick;
+
+    public ExecutorTimer(ThreadFactory threadFactory, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel out of range: " + ticksPerWheel);
+        }
+        mThreadFactory = Objects.requireNonNull(threadFactory, "threadFactory cannot be null");
+        mTickDuration = unit.toNanos(tickDuration);
+
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        mWheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            mWheel[i] = new Bucket();
+        }
+        mMask = size - 1;
+    }
+
+    public ExecutorTimer(String name) {
+        this(newFactory(name), DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL);
+    }
+
+    /**
+     * Returns the process-wide timer shared by tasks and trackers.
+     */
+    @NonNull
+    public static ExecutorTimer getDefaultTimer() {
+        if (sDefaultTimer != null) {
+            return sDefaultTimer;
+        }
+        synchronized (ExecutorTimer.class) {
+            if (sDefaultTimer == null) {
+                sDefaultTimer = new ExecutorTimer("Timer");
+            }
+        }
+        return sDefaultTimer;
+    }
+
+    private static ThreadFactory newFactory(String name) {
+        ExecutorFactory factory = new ExecutorFactory() {};
+        factory.setName(name);
+        factory.setDaemon(true);
+        return factory;
+    }
+
+    /**
+     * Runs the task on the timer thread once the delay has passed.
+     */
+    @NonNull
+    public Timeout schedule(@NonNull Runnable task, long delay, @NonNull TimeUnit unit) {
+        Objects.requireNonNull(task, "task cannot be null");
+        start();
+
+        final long deadline = System.nanoTime() + Math.max(0L, unit.toNanos(delay)) - mStartTime;
+        final TimerTimeout timeout = new TimerTimeout(task, deadline);
+        mPending.incrementAndGet();
+        mTimeouts.add(timeout);
+        if (mIdle) {
+            LockSupport.unpark(mWorkerThread);
+        }
+        return timeout;
+    }
+
+    /**
+     * Number of scheduled tasks that have neither fired nor been cancelled.
+     */
+    public long getPendingTimeouts() {
+        return mPending.get();
+    }
+
+    /**
+     * Stops the timer thread. Tasks that did not fire yet never will.
+     */
+    public void stop() {
+        if (mWorkerState.getAndSet(WORKER_SHUTDOWN) == WORKER_STARTED) {
+            LockSupport.unpark(mWorkerThread);
+        }
+    }
+
+    private void start() {
+        switch (mWorkerState.get()) {
+            case WORKER_INIT:
+                if (mWorkerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+                    mStartTime = System.nanoTime();
+                    Thread thread = mThreadFactory.newThread(this::loop);
+                    mWorkerThread = thread;
+                    thread.start();
+                } else {
+                    awaitStart();
+                }
+                break;
+            case WORKER_STARTED:
+                awaitStart();
+                break;
+            default:
+                throw new IllegalStateException("Timer has been stopped");
+        }
+    }
+
+    private void awaitStart() {
+        // mWorkerThread is published after mStartTime.
+        while (mWorkerThread == null) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void loop() {
+        while (mWorkerState.get() == WORKER_STARTED) {
+            if (!awaitNextTick()) {
+                continue;
+            }
+            removeCancelled();
+            transferTimeouts();
+            mWheel[(int) (mTick & mMask)].expire();
+            mTick++;
+        }
+    }
+
+    /**
+     * Waits for the end of the current tick. Returns false if woken up for another reason.
+     */
+    private boolean awaitNextTick() {
+        if (mPending.get() == 0) {
+            mIdle = true;
+            if (mPending.get() == 0 && mWorkerState.get() == WORKER_STARTED) {
+                LockSupport.park(this);
+            }
+            mIdle = false;
+            // The wheel is empty, so the ticks we slept through can be skipped.
+            mTick = Math.max(mTick, (System.nanoTime() - mStartTime) / mTickDuration);
+            return false;
+        }
+        final long deadline = mTickDuration * (mTick + 1);
+        while (true) {
+            final long sleep = deadline - (System.nanoTime() - mStartTime);
+            if (sleep <= 0) {
+                return true;
+            }
+            LockSupport.parkNanos(this, sleep);
+            if (mWorkerState.get() != WORKER_STARTED) {
+                return false;
+            }
+        }
+    }
+
+    private void transferTimeouts() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            final TimerTimeout timeout = mTimeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            final long calculated = timeout.mDeadline / mTickDuration;
+            timeout.mRemainingRounds = (calculated - mTick) / mWheel.length;
+            // Already late: put it into the current tick.
+            final long ticks = Math.max(calculated, mTick);
+            mWheel[(int) (ticks & mMask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        while (true) {
+            final TimerTimeout timeout = mCancelledTimeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.mBucket != null) {
+                timeout.mBucket.remove(timeout);
+            }
+        }
+    }
+
+    private final class TimerTimeout implements Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        final Runnable mTask;
+        final long mDeadline;
+        final AtomicInteger mState = new AtomicInteger(ST_INIT);
+
+        // Owned by the timer thread.
+        long mRemainingRounds;
+        TimerTimeout mNext;
+        TimerTimeout mPrev;
+        Bucket mBucket;
+
+        TimerTimeout(Runnable task, long deadline) {
+            mTask = task;
+            mDeadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!mState.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            mPending.decrementAndGet();
+            mCancelledTimeouts.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mState.get() == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return mState.get() == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!mState.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            mPending.decrementAndGet();
+            try {
+                mTask.run();
+            } catch (Throwable tr) {
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, tr);
+            }
+        }
+    }
+
+    /**
+     * A doubly linked list of timeouts, touched only by the timer thread.
+     */
+    private static final class Bucket {
+        private TimerTimeout mHead;
+        private TimerTimeout mTail;
+
+        void add(TimerTimeout timeout) {
+            timeout.mBucket = this;
+            if (mHead == null) {
+                mHead = mTail = timeout;
+            } else {
+                mTail.mNext = timeout;
+                timeout.mPrev = mTail;
+                mTail = timeout;
+            }
+        }
+
+        void expire() {
+            TimerTimeout timeout = mHead;
+            while (timeout != null) {
+                final TimerTimeout next = timeout.mNext;
+                if (timeout.mRemainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.mRemainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(TimerTimeout timeout) {
+            if (timeout.mBucket != this) {
+                return;
+            }
+            final TimerTimeout next = timeout.mNext;
+            if (timeout.mPrev != null) {
+                timeout.mPrev.mNext = next;
+            }
+            if (next != null) {
+                next.mPrev = timeout.mPrev;
+            }
+            if (timeout == mHead) {
+                mHead = next;
+            }
+            if (timeout == mTail) {
+                mTail = timeout.mPrev;
+            }
+            timeout.mPrev = null;
+            timeout.mNext = null;
+            timeout.mBucket = null;
+        }
+    }
+}
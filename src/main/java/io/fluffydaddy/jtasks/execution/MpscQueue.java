@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.execution;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded multi-producer single-consumer linked queue.
+ * <p>
+ * The queue is not intrusive: {@link #offer(Object)} allocates one small node per element.
+ * What it saves over a locked deque is the lock, not the allocation.
+ * <p>
+ * {@link #offer(Object)} is wait-free and may be called from any thread. {@link #poll()} and
+ * {@link #isEmpty()} must only be called by one consumer at a time; handing the consumer role
+ * over to another thread needs a happens-before edge, such as an atomic flag or an executor.
+ * <p>
+ * A producer that was preempted between its two steps makes the queue look empty to the
+ * consumer for that moment, so consumers that go to sleep must re-check after publishing that
+ * they sleep.
+ */
+public final class MpscQueue<E> {
+    private static final class Node<E> {
+        E mValue;
+        volatile Node<E> mNext;
+
+        Node(E value) {
+            mValue = value;
+        }
+    }
+
+    private final AtomicReference<Node<E>> mTail;
+    // Consumer side only.
+    private Node<E> mHead;
+
+    public MpscQueue() {
+        mHead = new Node<>(null);
+        mTail = new AtomicReference<>(mHead);
+    }
+
+    public void offer(E value) {
+        final Node<E> node = new Node<>(Objects.requireNonNull(value, "value cannot be null"));
+        mTail.getAndSet(node).mNext = node;
+    }
+
+    public E poll() {
+        final Node<E> next = mHead.mNext;
+        if (next == null) {
+            return null;
+        }
+        final E value = next.mValue;
+        next.mValue = null;
+        mHead = next;
+        return value;
+    }
+
+    public boolean isEmpty() {
+        return mHead.mNext == null;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.execution;
+
+import io.fluffydaddy.annotation.NonNull;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for a bounded {@link ThreadPoolExecutor}: what happens to a command
+ * once all threads are busy and the work queue is full.
+ * <p>
+ * Every policy counts what it did, so a burst shows up as numbers rather than as
+ * exceptions somewhere deep in a caller. A policy may be shared by several pools;
+ * its counters then cover all of them.
+ *
+ * @see ExecutorSerial#setRejectionPolicy(RejectionPolicy)
+ */
+public final class RejectionPolicy implements RejectedExecutionHandler {
+    public enum Kind {
+        /** Throw {@link RejectedExecutionException}. */
+        ABORT,
+        /** Wait for free space in the queue, but not longer than the timeout. */
+        BLOCK,
+        /** Run the command in the thread that submitted it. */
+        CALLER_RUNS,
+        /** Drop the oldest queued command to make room. */
+        DROP_OLDEST,
+        /** Hand the command to an unbounded overflow executor. */
+        OVERFLOW
+    }
+
+    /**
+     * A queued command that wants to know when {@link Kind#DROP_OLDEST} throws it away,
+     * for example because it stands for a whole backlog of commands.
+     * <p>
+     * The callback runs in the thread whose submission was rejected, before that submission
+     * is retried. It must not put anything back into the pool from there, or it would take
+     * the slot that was just freed for the retried command.
+     */
+    public interface Droppable extends Runnable {
+        /**
+         * @return how many commands were discarded along with this one, at least 1.
+         */
+        int onDropped();
+    }
+
+    private final Kind mKind;
+    private final long mTimeoutNanos;
+    private final Executor mOverflow;
+
+    private final AtomicLong mRejected = new AtomicLong();
+    private final AtomicLong mAborted = new AtomicLong();
+    private final AtomicLong mBlocked = new AtomicLong();
+    private final AtomicLong mBlockedNanos = new AtomicLong();
+    private final AtomicLong mCallerRuns = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mOverflowed = new AtomicLong();
+
+    private RejectionPolicy(Kind kind, long timeoutNanos, Executor overflow) {
+        mKind = kind;
+        mTimeoutNanos = timeoutNanos;
+        mOverflow = overflow;
+    }
+
+    @NonNull
+    public static RejectionPolicy abort() {
+        return new RejectionPolicy(Kind.ABORT, 0, null);
+    }
+
+    @NonNull
+    public static RejectionPolicy block(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative: " + timeout);
+        }
+        return new RejectionPolicy(Kind.BLOCK, unit.toNanos(timeout), null);
+    }
+
+    @NonNull
+    public static RejectionPolicy callerRuns() {
+        return new RejectionPolicy(Kind.CALLER_RUNS, 0, null);
+    }
+
+    @NonNull
+    public static RejectionPolicy dropOldest() {
+        return new RejectionPolicy(Kind.DROP_OLDEST, 0, null);
+    }
+
+    @NonNull
+    public static RejectionPolicy overflow(Executor overflow) {
+        return new RejectionPolicy(Kind.OVERFLOW, 0, Objects.requireNonNull(overflow, "overflow cannot be null"));
+    }
+
+    /**
+     * Spills to the daemon lane of the {@linkplain ExecutorPool#getDefaultPool() default pool},
+     * whose queue is unbounded.
+     */
+    @NonNull
+    public static RejectionPolicy overflow() {
+        return overflow(command -> ExecutorPool.getDefaultPool().execute(command, true));
+    }
+
+    @Override
+    public void rejectedExecution(Runnable command, ThreadPoolExecutor executor) {
+        mRejected.incrementAndGet();
+        if (executor.isShutdown()) {
+            mAborted.incrementAndGet();
+            throw new RejectedExecutionException("Executor " + executor + " is shut down");
+        }
+        switch (mKind) {
+            case BLOCK:
+                block(command, executor);
+                break;
+            case CALLER_RUNS:
+                mCallerRuns.incrementAndGet();
+                command.run();
+                break;
+            case DROP_OLDEST:
+                final Runnable dropped = executor.getQueue().poll();
+                if (dropped instanceof Droppable) {
+                    mDropped.addAndGet(Math.max(1, ((Droppable) dropped).onDropped()));
+                } else if (dropped != null) {
+                    mDropped.incrementAndGet();
+                }
+                executor.execute(command);
+                break;
+            case OVERFLOW:
+                mOverflowed.incrementAndGet();
+                mOverflow.execute(command);
+                break;
+            default:
+                mAborted.incrementAndGet();
+                throw new RejectedExecutionException("Task " + command + " rejected from " + executor);
+        }
+    }
+
+    private void block(Runnable command, ThreadPoolExecutor executor) {
+        mBlocked.incrementAndGet();
+        final long start = System.nanoTime();
+        boolean queued = false;
+        try {
+            queued = executor.getQueue().offer(command, mTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            mBlockedNanos.addAndGet(System.nanoTime() - start);
+        }
+        if (!queued) {
+            mAborted.incrementAndGet();
+            throw new RejectedExecutionException("Task " + command + " timed out waiting for " + executor);
+        }
+        if (executor.getPoolSize() == 0) {
+            // Every worker may have timed out while we waited; someone has to drain the queue.
+            executor.prestartCoreThread();
+        }
+    }
+
+    public Kind getKind() {
+        return mKind;
+    }
+
+    /**
+     * How many times the pool could not accept a command right away.
+     */
+    public long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    /**
+     * Commands that were finally refused with {@link RejectedExecutionException}.
+     */
+    public long getAbortedCount() {
+        return mAborted.get();
+    }
+
+    /**
+     * Submissions that had to wait for queue space.
+     */
+    public long getBlockedCount() {
+        return mBlocked.get();
+    }
+
+    /**
+     * Total time submitters spent waiting for queue space.
+     */
+    public long getBlockedTime(TimeUnit unit) {
+        return unit.convert(mBlockedNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getCallerRunsCount() {
+        return mCallerRuns.get();
+    }
+
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    public long getOverflowCount() {
+        return mOverflowed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RejectionPolicy{" + mKind
+                + ", rejected=" + mRejected.get()
+                + ", aborted=" + mAborted.get()
+                + ", blocked=" + mBlocked.get()
+                + ", callerRuns=" + mCallerRuns.get()
+                + ", dropped=" + mDropped.get()
+                + ", overflowed=" + mOverflowed.get() + '}';
+    }
+}
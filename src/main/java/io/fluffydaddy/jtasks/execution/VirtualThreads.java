@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.execution;
+
+import io.fluffydaddy.annotation.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads.
+ * <p>
+ * This is the baseline version used on runtimes without virtual threads: it reports them as
+ * unsupported and callers fall back to platform threads. On Java 21+ the multi-release jar
+ * replaces this class with one backed by {@code Thread.ofVirtual()}.
+ */
+public final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns true if the running JVM can create virtual threads.
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Creates an unstarted virtual thread for the command.
+     */
+    @NonNull
+    public static Thread newThread(@NonNull Runnable command) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+    }
+
+    /**
+     * Creates an executor that starts a new thread from the factory for every command.
+     */
+    @NonNull
+    public static ExecutorService newThreadPerTaskExecutor(@NonNull ThreadFactory factory) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+    }
+}
@@ -87,11 +87,24 @@ public class ArchTaskExecutor extends TaskExecutor {
         mDelegate.postToMainThread(runnable);
     }
 
+    @Override
+    public void postToMainThread(@NonNull Object key, @NonNull Runnable runnable) {
+        mDelegate.postToMainThread(key, runnable);
+    }
+
     @NonNull
     public static Executor getMainThreadExecutor() {
         return sMainThreadExecutor;
     }
 
+    /**
+     * Returns an executor that posts to the main thread serving the given key.
+     */
+    @NonNull
+    public static Executor getMainThreadExecutor(@NonNull Object key) {
+        return command -> getInstance().postToMainThread(key, command);
+    }
+
     @NonNull
     public static Executor getIOThreadExecutor() {
         return sIOThreadExecutor;
@@ -101,4 +114,9 @@ public class ArchTaskExecutor extends TaskExecutor {
     public boolean isMainThread() {
         return mDelegate.isMainThread();
     }
+
+    @Override
+    public boolean isMainThread(@NonNull Object key) {
+        return mDelegate.isMainThread(key);
+    }
 }
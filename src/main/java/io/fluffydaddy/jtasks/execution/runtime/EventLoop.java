@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fluffydaddy.jtasks.execution.runtime;
+
+import io.fluffydaddy.annotation.NonNull;
+import io.fluffydaddy.jtasks.execution.ExecutorTimer;
+import io.fluffydaddy.jtasks.execution.MpscQueue;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single thread that runs posted messages one after another, like a UI main thread.
+ * <p>
+ * Messages from any thread go into a lock-free inbox. The loop takes up to {@code batchSize}
+ * of them per turn, keeps delayed messages in its own heap until they are due, and parks when
+ * there is nothing to do. A producer only pays for an unpark when the loop is actually parked.
+ * Before parking, the loop gives its {@link IdleHandler}s a chance to run.
+ * <p>
+ * A message that throws, including an {@link Error}, is reported to the loop thread's uncaught
+ * exception handler and the loop keeps going. If the loop thread dies anyway, the loop counts as
+ * quit and new posts are rejected. Cancelled delayed messages are dropped from the heap right
+ * away instead of waiting for their due time.
+ */
+public class EventLoop implements Executor {
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * Called when the loop has run out of due messages and is about to wait.
+     */
+    public interface IdleHandler {
+        /**
+         * @return true to stay registered, false to be removed.
+         */
+        boolean queueIdle();
+    }
+
+    private final Thread mThread;
+    private final int mBatchSize;
+    private final MpscQueue<Runnable> mInbox = new MpscQueue<>();
+    // Loop thread only.
+    private final PriorityQueue<Message> mDelayed = new PriorityQueue<>();
+    private final List<IdleHandler> mIdleHandlers = new CopyOnWriteArrayList<>();
+    private final AtomicLong mSequence = new AtomicLong();
+
+    private volatile boolean mParked;
+    private volatile boolean mQuit;
+
+    public EventLoop(ThreadFactory factory, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        mBatchSize = batchSize;
+        mThread = factory.newThread(this::loop);
+        mThread.start();
+    }
+
+    /**
+     * Starts a daemon loop thread with the given name.
+     */
+    public EventLoop(String name) {
+        this(command -> {
+            Thread thread = new Thread(command, name);
+            thread.setDaemon(true);
+            return thread;
+        }, DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        post(command);
+    }
+
+    public void post(@NonNull Runnable command) {
+        enqueue(Objects.requireNonNull(command, "command cannot be null"));
+    }
+
+    /**
+     * Runs the command on the loop after the delay. The returned handle cancels it.
+     */
+    @NonNull
+    public ExecutorTimer.Timeout postDelayed(@NonNull Runnable command, long delay, TimeUnit unit) {
+        return postAtTime(command, System.nanoTime() + unit.toNanos(Math.max(0L, delay)));
+    }
+
+    /**
+     * Runs the command on the loop once {@link System#nanoTime()} reaches the given time.
+     */
+    @NonNull
+    public ExecutorTimer.Timeout postAtTime(@NonNull Runnable command, long uptimeNanos) {
+        Message message = new Message(Objects.requireNonNull(command, "command cannot be null"),
+                uptimeNanos, mSequence.getAndIncrement());
+        enqueue(message);
+        return message;
+    }
+
+    public void addIdleHandler(@NonNull IdleHandler handler) {
+        mIdleHandlers.add(Objects.requireNonNull(handler, "handler cannot be null"));
+    }
+
+    public void removeIdleHandler(IdleHandler handler) {
+        mIdleHandlers.remove(handler);
+    }
+
+    /**
+     * Stops the loop. Messages that did not run yet are dropped.
+     */
+    public void quit() {
+        mQuit = true;
+        LockSupport.unpark(mThread);
+    }
+
+    public boolean isQuit() {
+        return mQuit;
+    }
+
+    public boolean isCurrentThread() {
+        return Thread.currentThread() == mThread;
+    }
+
+    public Thread getThread() {
+        return mThread;
+    }
+
+    private void enqueue(Runnable command) {
+        if (mQuit) {
+            throw new RejectedExecutionException("Event loop " + mThread.getName() + " has quit");
+        }
+        signal(command);
+    }
+
+    private void signal(Runnable command) {
+        mInbox.offer(command);
+        if (mParked) {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    private void loop() {
+        try {
+            drain();
+        } finally {
+            // Whatever stopped the thread, nothing would run the posts any more.
+            mQuit = true;
+        }
+    }
+
+    private void drain() {
+        boolean idle = false;
+        while (!mQuit) {
+            long now = System.nanoTime();
+            int ran = 0;
+            Runnable command;
+            while (ran < mBatchSize && (command = mInbox.poll()) != null) {
+                if (command instanceof Message && ((Message) command).mWhen - now > 0) {
+                    if (!((Message) command).isCancelled()) {
+                        mDelayed.add((Message) command);
+                    }
+                    continue;
+                }
+                dispatch(command);
+                ran++;
+            }
+            now = System.nanoTime();
+            Message message;
+            while (ran < mBatchSize && (message = mDelayed.peek()) != null && message.mWhen - now <= 0) {
+                dispatch(mDelayed.poll());
+                ran++;
+            }
+            if (ran > 0) {
+                idle = false;
+                continue;
+            }
+            if (!idle) {
+                idle = true;
+                runIdleHandlers();
+                continue;
+            }
+            park();
+        }
+    }
+
+    private void park() {
+        mParked = true;
+        try {
+            // Re-check after publishing mParked: a producer either sees it or we see its message.
+            if (!mInbox.isEmpty() || mQuit) {
+                return;
+            }
+            final Message next = mDelayed.peek();
+            if (next == null) {
+                LockSupport.park(this);
+            } else {
+                final long delay = next.mWhen - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(this, delay);
+                }
+            }
+        } finally {
+            mParked = false;
+        }
+    }
+
+    private void runIdleHandlers() {
+        for (IdleHandler handler : mIdleHandlers) {
+            boolean keep = false;
+            try {
+                keep = handler.queueIdle();
+            } catch (Throwable e) {
+                report(e);
+            }
+            if (!keep) {
+                mIdleHandlers.remove(handler);
+            }
+        }
+    }
+
+    private void dispatch(Runnable command) {
+        try {
+            command.run();
+        } catch (Throwable e) {
+            report(e);
+        }
+    }
+
+    private void purge(Message message) {
+        if (isCurrentThread()) {
+            mDelayed.remove(message);
+        } else if (!mQuit) {
+            // The heap belongs to the loop thread, so let the loop drop the message itself.
+            signal(() -> mDelayed.remove(message));
+        }
+    }
+
+    private void report(Throwable cause) {
+        mThread.getUncaughtExceptionHandler().uncaughtException(mThread, cause);
+    }
+
+    private final class Message implements Runnable, ExecutorTimer.Timeout, Comparable<Message> {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable mCommand;
+        private final long mWhen;
+        private final long mSequence;
+        private final AtomicInteger mState = new AtomicInteger(PENDING);
+
+        Message(Runnable command, long when, long sequence) {
+            mCommand = command;
+            mWhen = when;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            if (mState.compareAndSet(PENDING, EXPIRED)) {
+                mCommand.run();
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!mState.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            purge(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mState.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return mState.get() == EXPIRED;
+        }
+
+        @Override
+        public int compareTo(Message other) {
+            final long diff = mWhen - other.mWhen;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return Long.compare(mSequence, other.mSequence);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fluffydaddy.jtasks.execution.runtime;
+
+import io.fluffydaddy.annotation.NonNull;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link TaskExecutor} with a real main thread: an {@link EventLoop}.
+ * <p>
+ * Install it with {@link ArchTaskExecutor#setDelegate(TaskExecutor)}. After that, main-thread
+ * posts such as {@code LiveData.postValue} and task results run on the loop, and
+ * {@link #isMainThread()} is true exactly on the loop thread. Disk IO runs on the
+ * {@linkplain ExecutorPool#getDefaultPool() default pool}.
+ */
+public class EventLoopTaskExecutor extends TaskExecutor
+{
+    private final EventLoop mMainLoop;
+    private final Executor mDiskIO;
+
+    public EventLoopTaskExecutor(@NonNull EventLoop mainLoop, @NonNull Executor diskIO) {
+        mMainLoop = Objects.requireNonNull(mainLoop, "mainLoop cannot be null");
+        mDiskIO = Objects.requireNonNull(diskIO, "diskIO cannot be null");
+    }
+
+    public EventLoopTaskExecutor() {
+        this(new EventLoop("main"), ExecutorPool.getDefaultPool());
+    }
+
+    @Override
+    public void executeOnDiskIO(@NonNull Runnable runnable) {
+        mDiskIO.execute(runnable);
+    }
+
+    @Override
+    public void postToMainThread(@NonNull Runnable runnable) {
+        mMainLoop.post(runnable);
+    }
+
+    @Override
+    public boolean isMainThread() {
+        return mMainLoop.isCurrentThread();
+    }
+
+    @NonNull
+    public EventLoop getMainLoop() {
+        return mMainLoop;
+    }
+}
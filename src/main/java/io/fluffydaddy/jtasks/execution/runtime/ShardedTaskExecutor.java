@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.fluffydaddy.jtasks.execution.runtime;
+
+import io.fluffydaddy.annotation.NonNull;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link TaskExecutor} with several main threads, one {@link EventLoop} each.
+ * <p>
+ * Keyed posts always go to the same loop, chosen by the key's hash. So the callbacks and
+ * state changes of one task or one LiveData keep their order, while different keys spread
+ * over all loops. Posts without a key go to the first loop. {@link #isMainThread()} is true
+ * on any of the loops, {@link #isMainThread(Object)} only on the loop of the key.
+ * <p>
+ * Install it with {@link ArchTaskExecutor#setDelegate(TaskExecutor)}.
+ */
+public class ShardedTaskExecutor extends TaskExecutor
+{
+    private final EventLoop[] mLoops;
+    private final Executor mDiskIO;
+
+    public ShardedTaskExecutor(int loopCount, @NonNull Executor diskIO) {
+        if (loopCount <= 0) {
+            throw new IllegalArgumentException("loopCount must be positive: " + loopCount);
+        }
+        mDiskIO = Objects.requireNonNull(diskIO, "diskIO cannot be null");
+        mLoops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            mLoops[i] = new EventLoop("main-" + i);
+        }
+    }
+
+    public ShardedTaskExecutor(int loopCount) {
+        this(loopCount, ExecutorPool.getDefaultPool());
+    }
+
+    /**
+     * One loop per processor.
+     */
+    public ShardedTaskExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void executeOnDiskIO(@NonNull Runnable runnable) {
+        mDiskIO.execute(runnable);
+    }
+
+    @Override
+    public void postToMainThread(@NonNull Runnable runnable) {
+        mLoops[0].post(runnable);
+    }
+
+    @Override
+    public void postToMainThread(@NonNull Object key, @NonNull Runnable runnable) {
+        getLoopFor(key).post(runnable);
+    }
+
+    @Override
+    public boolean isMainThread() {
+        for (EventLoop loop : mLoops) {
+            if (loop.isCurrentThread()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isMainThread(@NonNull Object key) {
+        return getLoopFor(key).isCurrentThread();
+    }
+
+    @NonNull
+    public EventLoop getLoopFor(@NonNull Object key) {
+        int hash = key.hashCode();
+        // Spread the high bits down, identity hashes differ mostly there.
+        hash ^= hash >>> 16;
+        return mLoops[Math.floorMod(hash, mLoops.length)];
+    }
+
+    @NonNull
+    public EventLoop getLoop(int index) {
+        return mLoops[index];
+    }
+
+    public int getLoopCount() {
+        return mLoops.length;
+    }
+
+    /**
+     * Stops every loop.
+     */
+    public void quit() {
+        for (EventLoop loop : mLoops) {
+            loop.quit();
+        }
+    }
+}
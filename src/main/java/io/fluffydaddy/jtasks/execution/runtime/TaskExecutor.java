@@ -33,6 +33,19 @@ public abstract class TaskExecutor
      */
     public abstract void postToMainThread(@NonNull Runnable runnable);
 
+    /**
+     * Posts the given task to the main thread that serves the given key.
+     * <p>
+     * Tasks posted with the same key run in order. Executors with a single main thread
+     * ignore the key.
+     *
+     * @param key      The key that picks the main thread.
+     * @param runnable The runnable to run on the main thread.
+     */
+    public void postToMainThread(@NonNull Object key, @NonNull Runnable runnable) {
+        postToMainThread(runnable);
+    }
+
     /**
      * Executes the given task on the main thread.
      * <p>
@@ -54,4 +67,14 @@ public abstract class TaskExecutor
      * @return true if we are on the main thread, false otherwise.
      */
     public abstract boolean isMainThread();
+
+    /**
+     * Returns true if the current thread is the main thread that serves the given key.
+     *
+     * @param key The key that picks the main thread.
+     * @return true if we are on the main thread of the key, false otherwise.
+     */
+    public boolean isMainThread(@NonNull Object key) {
+        return isMainThread();
+    }
 }
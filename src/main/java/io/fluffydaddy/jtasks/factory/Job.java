@@ -16,8 +16,14 @@
 
 package io.fluffydaddy.jtasks.factory;
 
+import io.fluffydaddy.jtasks.core.RetryPolicy;
+
 public interface Job<R, P> {
 	R doInBackground(P param) throws Exception;
 	void onFinishing(R result);
 	void onBeginning();
+	
+	default RetryPolicy getRetryPolicy() {
+		return null;
+	}
 }
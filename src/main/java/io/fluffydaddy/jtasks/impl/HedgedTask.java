@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.fluffydaddy.jtasks.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.fluffydaddy.jtasks.core.CancellationToken;
+import io.fluffydaddy.jtasks.core.HedgePolicy;
+import io.fluffydaddy.jtasks.core.ITaskFactory;
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.core.ITaskTracker;
+import io.fluffydaddy.jtasks.core.TrackState;
+import io.fluffydaddy.jtasks.execution.ExecutorTimer;
+
+/**
+ * Задача с подстраховкой по {@link HedgePolicy}.
+ *
+ * <p>
+ * Основная попытка и копии выполняются отдельными задачами фабрики, копии запускает
+ * Таймер. Задача возвращает результат, как только его дала любая из попыток, и не
+ * Ждет остальных: проигравшие уничтожаются через {@link ITaskService#destroy()}.
+ * Поэтому даже попытка, которая застряла в блокирующем чтении и не слышит ни токен,
+ * Ни прерывание, не задерживает результат. Сама задача поток пула не держит: пока
+ * Идут попытки, она ждет их завершения в колбэках, так что любое число таких задач
+ * Не займет весь пул. Копии лечат задержки, а не ошибки:
+ * Задача падает, только когда упали все запущенные попытки. Для ошибок есть
+ * {@link io.fluffydaddy.jtasks.core.RetryPolicy}.
+ * </p>
+ */
+public class HedgedTask<R> extends TaskService<R, Void> {
+    private final ITaskFactory mFactory;
+    private final Callable<R> mJob;
+    private final HedgePolicy mPolicy;
+
+    public HedgedTask(ITaskFactory factory, Callable<R> job, HedgePolicy policy) {
+        mFactory = Objects.requireNonNull(factory, "factory cannot be null");
+        mJob = Objects.requireNonNull(job, "job cannot be null");
+        mPolicy = Objects.requireNonNull(policy, "policy cannot be null");
+        setTaskPool(factory.getTaskPool());
+        setCompletionDispatch(factory.getCompletionDispatch());
+    }
+
+    @Override
+    public R doInBackground(Void param) throws Exception {
+        try {
+            return doInBackgroundAsync(param).get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    CompletableFuture<R> doInBackgroundAsync(Void param) {
+        return new Race(CancellationToken.current()).start();
+    }
+
+    public HedgePolicy getHedgePolicy() {
+        return mPolicy;
+    }
+
+    /*
+     * Состояние одного запуска: все попытки и победитель.
+     */
+    private final class Race {
+        private final CancellationToken mToken;
+        private final CompletableFuture<R> mWinner = new CompletableFuture<>();
+        private final Lock mLock = new ReentrantLock();
+
+        // Под mLock.
+        private final List<ITaskService<R, Void>> mAttempts = new ArrayList<>();
+        private int mRunning;
+        private int mHedges;
+        private boolean mClosed;
+        private ExecutorTimer.Timeout mNextHedge;
+
+        private volatile int mWinnerIndex = -1;
+
+        Race(CancellationToken token) {
+            mToken = token;
+        }
+
+        /*
+         * Вернет future, который завершится после уборки проигравших.
+         */
+        CompletableFuture<R> start() {
+            final CompletableFuture<R> done = mWinner.whenComplete((result, cause) -> {
+                final int hedges = close();
+                if (hedges > 0) {
+                    reportHedges(hedges);
+                }
+            });
+            mLock.lock();
+            try {
+                startAttempt();
+                scheduleHedge();
+            } catch (RuntimeException e) {
+                mWinner.completeExceptionally(e);
+            } finally {
+                mLock.unlock();
+            }
+            return done;
+        }
+
+        /*
+         * Запуск под mLock: иначе close() мог бы пропустить попытку при уничтожении проигравших.
+         */
+        private void startAttempt() {
+            final ITaskService<R, Void> attempt = mFactory.createTask(mJob);
+            attempt.setCancellationParent(mToken);
+            final int index = mAttempts.size();
+            final long start = System.nanoTime();
+            mAttempts.add(attempt);
+            mRunning++;
+            // Попытку учитывает ровно один из двух: ее завершение или неудачный запуск.
+            final AtomicBoolean settled = new AtomicBoolean();
+            attempt.getCompletion().whenComplete((result, cause) -> {
+                if (settled.compareAndSet(false, true)) {
+                    onAttemptDone(index, start, result, cause);
+                }
+            });
+            try {
+                attempt.execute();
+            } catch (RuntimeException e) {
+                if (settled.compareAndSet(false, true)) {
+                    mRunning--;
+                }
+                throw e;
+            }
+        }
+
+        private void onAttemptDone(int index, long start, R result, Throwable cause) {
+            if (cause == null) {
+                if (mWinner.complete(result)) {
+                    mWinnerIndex = index;
+                    mPolicy.recordLatency(System.nanoTime() - start);
+                }
+                return;
+            }
+            final boolean allFailed;
+            mLock.lock();
+            try {
+                allFailed = --mRunning == 0;
+            } finally {
+                mLock.unlock();
+            }
+            if (allFailed) {
+                if (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                mWinner.completeExceptionally(cause);
+            }
+        }
+
+        private void scheduleHedge() {
+            if (!mClosed && mHedges < mPolicy.getMaxHedges()) {
+                mNextHedge = ExecutorTimer.getDefaultTimer().schedule(this::startHedge,
+                        mPolicy.getThresholdNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void startHedge() {
+            mLock.lock();
+            try {
+                if (mClosed || mWinner.isDone() || mToken.isCancellationRequested()) {
+                    return;
+                }
+                mHedges++;
+                startAttempt();
+                scheduleHedge();
+            } catch (RuntimeException e) {
+                // Копия не запустилась, например пул ее отклонил: остальные попытки идут дальше.
+                handleException(e);
+                return;
+            } finally {
+                mLock.unlock();
+            }
+            final ITaskTracker tracker = mTracker;
+            if (tracker != null) {
+                tracker.setState(TrackState.HEDGING, HedgedTask.this);
+            } else {
+                setState(TrackState.HEDGING);
+            }
+        }
+
+        /*
+         * Остановит таймер и уничтожит все незавершенные попытки. Вернет число копий.
+         */
+        private int close() {
+            final List<ITaskService<R, Void>> losers = new ArrayList<>();
+            final int hedges;
+            mLock.lock();
+            try {
+                mClosed = true;
+                if (mNextHedge != null) {
+                    mNextHedge.cancel();
+                }
+                for (ITaskService<R, Void> attempt : mAttempts) {
+                    if (!attempt.getCompletion().isDone()) {
+                        losers.add(attempt);
+                    }
+                }
+                hedges = mHedges;
+            } finally {
+                mLock.unlock();
+            }
+            for (ITaskService<R, Void> loser : losers) {
+                loser.destroy();
+            }
+            return hedges;
+        }
+
+        private void reportHedges(int hedges) {
+            final ITaskTracker tracker = mTracker;
+            if (tracker != null) {
+                tracker.recordHedges(HedgedTask.this, hedges, mWinnerIndex > 0);
+            }
+        }
+    }
+}
@@ -16,13 +16,37 @@
 
 package io.fluffydaddy.jtasks.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+import io.fluffydaddy.jtasks.core.HedgePolicy;
 import io.fluffydaddy.jtasks.core.ITaskService;
 import io.fluffydaddy.jtasks.core.ITaskFactory;
+import io.fluffydaddy.jtasks.core.ITaskScope;
+import io.fluffydaddy.jtasks.execution.ExecutorBatch;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+import io.fluffydaddy.jtasks.execution.ExecutorTimer;
 import io.fluffydaddy.jtasks.factory.Job;
 
 public class TaskFactory extends ITaskFactory {
+    private final ConcurrentMap<Object, ITaskService<?, ?>> mShared = new ConcurrentHashMap<>();
+    private volatile long mShareTtlNanos;
+
+    public TaskFactory() {
+        super();
+    }
+
+    public TaskFactory(ExecutorPool taskPool) {
+        super(taskPool);
+    }
+
     @Override
     public <R> ITaskService<R, Void> createTask(final Callable<R> job) {
         return createTask(new Job<>() {
@@ -42,9 +66,25 @@ public class TaskFactory extends ITaskFactory {
         });
     }
 
+    /**
+     * Задачи одной пачки запускаются через общий {@link ExecutorBatch}: в пул они
+     * Попадают кусками, а не по одной, что дешевле для множества мелких работ.
+     */
+    @Override
+    public <R> List<ITaskService<R, Void>> createTasks(Collection<? extends Callable<R>> jobs) {
+        final ExecutorBatch batch = new ExecutorBatch(getTaskPool());
+        final List<ITaskService<R, Void>> tasks = new ArrayList<>(jobs.size());
+        for (Callable<R> job : jobs) {
+            ITaskService<R, Void> task = createTask(job);
+            task.setTaskExecutor(batch);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
     @Override
     public <R, P> ITaskService<R, P> createTask(final Job<R, P> job) {
-        return new TaskService<>() {
+        TaskService<R, P> task = new TaskService<>() {
             @Override
             public final R doInBackground(P param) throws Exception {
                 return job.doInBackground(param);
@@ -60,5 +100,67 @@ public class TaskFactory extends ITaskFactory {
                 job.onFinishing(result);
             }
         };
+        task.setTaskPool(getTaskPool());
+        task.setRetryPolicy(job.getRetryPolicy());
+        task.setCompletionDispatch(getCompletionDispatch());
+        return task;
+    }
+
+    @Override
+    public <R> ITaskService<R, Void> createHedgedTask(Callable<R> job, HedgePolicy policy) {
+        return new HedgedTask<>(this, job, policy);
+    }
+
+    @Override
+    public <R> ITaskScope<R> openScope(ITaskScope.Policy policy) {
+        return new TaskScope<>(policy, this);
+    }
+
+    @Override
+    public <R> ITaskService<R, Void> shareTask(Object key, final Callable<R> job) {
+        return share(key, () -> createTask(job), null);
+    }
+
+    @Override
+    public <R, P> ITaskService<R, P> shareTask(final Job<R, P> job, P param) {
+        return share(Arrays.asList(job, param), () -> createTask(job), param);
+    }
+
+    @Override
+    public void setShareTtl(long ttl, TimeUnit unit) {
+        mShareTtlNanos = Math.max(0, unit.toNanos(ttl));
+    }
+
+    /**
+     * Количество ключей, которые сейчас держат общую задачу или ее результат.
+     */
+    public int getSharedCount() {
+        return mShared.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R, P> ITaskService<R, P> share(Object key, Supplier<ITaskService<R, P>> creator, P param) {
+        ITaskService<?, ?> shared = mShared.get(key);
+        if (shared != null) {
+            return (ITaskService<R, P>) shared;
+        }
+        final ITaskService<R, P> task = creator.get();
+        shared = mShared.putIfAbsent(key, task);
+        if (shared != null) {
+            // Другой вызов успел раньше, наша задача так и не запустится.
+            return (ITaskService<R, P>) shared;
+        }
+        task.getCompletion().whenComplete((result, error) -> release(key, task, error == null));
+        task.execute(param);
+        return task;
+    }
+
+    private void release(final Object key, final ITaskService<?, ?> task, boolean succeeded) {
+        final long ttl = mShareTtlNanos;
+        if (succeeded && ttl > 0) {
+            ExecutorTimer.getDefaultTimer().schedule(() -> mShared.remove(key, task), ttl, TimeUnit.NANOSECONDS);
+        } else {
+            mShared.remove(key, task);
+        }
     }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.fluffydaddy.jtasks.core.ITaskGroup;
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.runtime.ArchTaskExecutor;
+import io.fluffydaddy.reactive.livedata.LiveData;
+import io.fluffydaddy.reactive.livedata.MutableLiveData;
+
+public class TaskGroup<R> implements ITaskGroup<R> {
+    private final List<ITaskService<R, ?>> mTasks;
+    private final AtomicInteger mCompleted = new AtomicInteger();
+    private final AtomicInteger mFailed = new AtomicInteger();
+    private final Set<ITaskService<?, ?>> mWatched = ConcurrentHashMap.newKeySet();
+    private final CompletableFuture<Void> mCompletion = new CompletableFuture<>();
+    // Создается при первом запросе: пока прогресс никто не смотрит, в главный поток ничего не уходит.
+    private final AtomicReference<MutableLiveData<Integer>> mLiveCompleted = new AtomicReference<>();
+    private final AtomicBoolean mProgressPosted = new AtomicBoolean();
+    private final Runnable mPublishProgress = () -> {
+        // Сбрасываем флаг до чтения счетчика, чтобы не потерять последнее изменение.
+        mProgressPosted.set(false);
+        mLiveCompleted.get().setValue(mCompleted.get());
+    };
+
+    public TaskGroup(List<ITaskService<R, ?>> tasks) {
+        mTasks = Collections.unmodifiableList(new ArrayList<>(tasks));
+        if (mTasks.isEmpty()) {
+            mCompletion.complete(null);
+        }
+    }
+
+    /**
+     * Подпишется на текущий запуск задачи. Вызывается уже после execute():
+     * До него getCompletion() вернул бы прошлый запуск, и группа засчитала бы
+     * Старый результат. Каждая задача учитывается один раз.
+     */
+    void watch(ITaskService<?, ?> task) {
+        if (!mWatched.add(task)) {
+            return;
+        }
+        final CompletableFuture<?> completion = task.getCompletion();
+        if (!completion.isDone() && task.getActiveState() == null) {
+            // Задача вышла из execute(), не начав запуск: ждать ее нечего.
+            onTaskDone(true);
+        } else {
+            completion.whenComplete((result, cause) -> onTaskDone(cause != null));
+        }
+    }
+
+    private void onTaskDone(boolean failed) {
+        if (failed) {
+            mFailed.incrementAndGet();
+        }
+        final int completed = mCompleted.incrementAndGet();
+        postProgress();
+        if (completed == mTasks.size()) {
+            mCompletion.complete(null);
+        }
+    }
+
+    private void postProgress() {
+        final MutableLiveData<Integer> live = mLiveCompleted.get();
+        // Одна передача в главный поток на пачку изменений; значение читается уже там,
+        // Поэтому гонка потоков не может оставить устаревшее число.
+        if (live != null && mProgressPosted.compareAndSet(false, true)) {
+            ArchTaskExecutor.getInstance().postToMainThread(live, mPublishProgress);
+        }
+    }
+
+    @Override
+    public void execute() {
+        for (ITaskService<R, ?> task : mTasks) {
+            try {
+                task.execute();
+            } catch (Exception e) {
+                task.handleException(e);
+            }
+            watch(task);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        for (ITaskService<R, ?> task : mTasks) {
+            task.cancel();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (ITaskService<R, ?> task : mTasks) {
+            task.destroy();
+        }
+    }
+
+    @Override
+    public List<R> awaitTermination() {
+        try {
+            mCompletion.get();
+        } catch (Exception ignored) {
+            // Группа не завершается с ошибкой, ошибки видны по задачам.
+        }
+        return collectResults();
+    }
+
+    @Override
+    public List<R> awaitTermination(long timeout, TimeUnit unit) {
+        try {
+            mCompletion.get(timeout, unit);
+        } catch (Exception ignored) {
+            // По истечении срока возвращаем то, что успело завершиться.
+        }
+        return collectResults();
+    }
+
+    private List<R> collectResults() {
+        final List<R> results = new ArrayList<>(mTasks.size());
+        for (ITaskService<R, ?> task : mTasks) {
+            final CompletableFuture<R> completion = task.getCompletion();
+            R result = null;
+            if (completion.isDone() && !completion.isCompletedExceptionally()) {
+                result = completion.join();
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    @Override
+    public CompletableFuture<Void> getCompletion() {
+        return mCompletion;
+    }
+
+    @Override
+    public LiveData<Integer> getLiveCompleted() {
+        MutableLiveData<Integer> live = mLiveCompleted.get();
+        if (live == null) {
+            final MutableLiveData<Integer> created = new MutableLiveData<>(mCompleted.get());
+            if (mLiveCompleted.compareAndSet(null, created)) {
+                // Завершения между чтением счетчика и публикацией не теряются.
+                postProgress();
+            }
+            live = mLiveCompleted.get();
+        }
+        return live;
+    }
+
+    @Override
+    public int getCompletedCount() {
+        return mCompleted.get();
+    }
+
+    @Override
+    public int getFailedCount() {
+        return mFailed.get();
+    }
+
+    @Override
+    public int size() {
+        return mTasks.size();
+    }
+
+    @Override
+    public List<ITaskService<R, ?>> getTasks() {
+        return mTasks;
+    }
+}
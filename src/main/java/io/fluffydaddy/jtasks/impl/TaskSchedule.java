@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.fluffydaddy.jtasks.core.ITaskSchedule;
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorTimer;
+
+/*
+ * Срабатывания приходят в поток таймера: оттуда запуск сразу уходит в пул
+ * Задачи, поэтому ни onExecute, ни сама работа таймер не задерживают.
+ */
+public class TaskSchedule<R> implements ITaskSchedule<R> {
+    enum Mode {
+        ONCE, FIXED_RATE, FIXED_DELAY
+    }
+
+    private final ITaskService<R, ?> mTask;
+    private final Mode mMode;
+    private final long mPeriodNanos;
+    private final ExecutorTimer mTimer = ExecutorTimer.getDefaultTimer();
+
+    private volatile boolean mCancelled;
+    private volatile ExecutorTimer.Timeout mTimeout;
+    private volatile CompletableFuture<R> mLastRun;
+    // Плановое время следующего запуска по System.nanoTime().
+    private volatile long mNextTime;
+
+    private final AtomicLong mRuns = new AtomicLong();
+    private final AtomicLong mSkips = new AtomicLong();
+    private final AtomicLong mOverruns = new AtomicLong();
+    private final AtomicLong mFires = new AtomicLong();
+    private final AtomicLong mJitterSum = new AtomicLong();
+    private final AtomicLong mJitterMax = new AtomicLong();
+
+    TaskSchedule(ITaskService<R, ?> task, Mode mode, long periodNanos) {
+        mTask = task;
+        mMode = mode;
+        mPeriodNanos = periodNanos;
+    }
+
+    static <R> TaskSchedule<R> start(ITaskService<R, ?> task, Mode mode,
+                                     long initialDelay, long period, TimeUnit unit) {
+        if (initialDelay < 0) {
+            throw new IllegalArgumentException("initialDelay must not be negative: " + initialDelay);
+        }
+        if (mode != Mode.ONCE && period <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        final TaskSchedule<R> schedule = new TaskSchedule<>(task, mode, unit.toNanos(period));
+        schedule.mNextTime = System.nanoTime() + unit.toNanos(initialDelay);
+        schedule.arm();
+        return schedule;
+    }
+
+    private void arm() {
+        final long delay = Math.max(0L, mNextTime - System.nanoTime());
+        mTimeout = mTimer.schedule(this::fire, delay, TimeUnit.NANOSECONDS);
+        if (mCancelled) {
+            mTimeout.cancel();
+        }
+    }
+
+    private void fire() {
+        if (mCancelled) {
+            return;
+        }
+        final long now = System.nanoTime();
+        recordJitter(Math.max(0L, now - mNextTime));
+
+        switch (mMode) {
+            case ONCE:
+                run();
+                break;
+            case FIXED_DELAY:
+                run().whenComplete((result, cause) -> {
+                    if (!mCancelled) {
+                        mNextTime = System.nanoTime() + mPeriodNanos;
+                        arm();
+                    }
+                });
+                break;
+            case FIXED_RATE:
+                final CompletableFuture<R> last = mLastRun;
+                if (last != null && !last.isDone()) {
+                    // Предыдущий запуск еще идет: второй параллельно не запускаем.
+                    mSkips.incrementAndGet();
+                } else {
+                    run();
+                }
+                long next = mNextTime + mPeriodNanos;
+                if (next - now <= 0) {
+                    final long missed = (now - next) / mPeriodNanos + 1;
+                    mSkips.addAndGet(missed);
+                    next += missed * mPeriodNanos;
+                }
+                mNextTime = next;
+                arm();
+                break;
+        }
+    }
+
+    /*
+     * Возвращенный future завершается всегда: результатом запуска, его ошибкой
+     * Или отменой, если execute() так ничего и не запустил.
+     */
+    private CompletableFuture<R> run() {
+        mRuns.incrementAndGet();
+        final long start = System.nanoTime();
+        final CompletableFuture<R> run = new CompletableFuture<>();
+        mLastRun = run;
+        try {
+            mTask.execute(() -> launch(run));
+        } catch (Exception e) {
+            mTask.handleException(e);
+            run.completeExceptionally(e);
+        }
+        if (mMode == Mode.FIXED_RATE) {
+            run.whenComplete((result, cause) -> {
+                if (System.nanoTime() - start > mPeriodNanos) {
+                    mOverruns.incrementAndGet();
+                }
+            });
+        }
+        return run;
+    }
+
+    private void launch(CompletableFuture<R> run) {
+        try {
+            mTask.execute();
+        } catch (Exception e) {
+            mTask.handleException(e);
+            run.completeExceptionally(e);
+            return;
+        }
+        final CompletableFuture<R> completion = mTask.getCompletion();
+        completion.whenComplete((result, cause) -> {
+            if (cause != null) {
+                run.completeExceptionally(cause);
+            } else {
+                run.complete(result);
+            }
+        });
+        if (!completion.isDone() && mTask.getActiveState() == null) {
+            // Задача вышла из execute(), не начав запуск: завершения от нее не будет.
+            run.cancel(false);
+        }
+    }
+
+    private void recordJitter(long jitter) {
+        mFires.incrementAndGet();
+        mJitterSum.addAndGet(jitter);
+        mJitterMax.accumulateAndGet(jitter, Math::max);
+    }
+
+    @Override
+    public boolean cancel() {
+        if (mCancelled) {
+            return false;
+        }
+        mCancelled = true;
+        final ExecutorTimer.Timeout timeout = mTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public ITaskService<R, ?> getTask() {
+        return mTask;
+    }
+
+    @Override
+    public long getRunCount() {
+        return mRuns.get();
+    }
+
+    @Override
+    public long getSkipCount() {
+        return mSkips.get();
+    }
+
+    @Override
+    public long getOverrunCount() {
+        return mOverruns.get();
+    }
+
+    @Override
+    public long getMaxJitter(TimeUnit unit) {
+        return unit.convert(mJitterMax.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getMeanJitter(TimeUnit unit) {
+        final long fires = mFires.get();
+        return fires == 0 ? 0 : unit.convert(mJitterSum.get() / fires, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskSchedule{" + mMode
+                + ", runs=" + mRuns.get()
+                + ", skips=" + mSkips.get()
+                + ", overruns=" + mOverruns.get()
+                + ", meanJitter=" + getMeanJitter(TimeUnit.MICROSECONDS) + "us"
+                + ", maxJitter=" + getMaxJitter(TimeUnit.MICROSECONDS) + "us}";
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.fluffydaddy.jtasks.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.fluffydaddy.jtasks.core.CancellationToken;
+import io.fluffydaddy.jtasks.core.ITaskFactory;
+import io.fluffydaddy.jtasks.core.ITaskScope;
+import io.fluffydaddy.jtasks.core.ITaskService;
+
+public class TaskScope<R> implements ITaskScope<R> {
+    private final Policy mPolicy;
+    private final ITaskFactory mFactory;
+    private final CancellationToken mToken;
+    private final List<ITaskService<? extends R, ?>> mTasks = new ArrayList<>();
+    private final Lock mLock = new ReentrantLock();
+    private final Condition mAllDone = mLock.newCondition();
+    private final AtomicReference<Throwable> mFailure = new AtomicReference<>();
+    private final AtomicBoolean mSucceeded = new AtomicBoolean();
+
+    private int mPending;
+    private boolean mClosed;
+    private volatile R mResult;
+
+    public TaskScope(Policy policy, ITaskFactory factory) {
+        // Область внутри задачи отменяется вместе с ней.
+        this(policy, factory, CancellationToken.current());
+    }
+
+    public TaskScope(Policy policy, ITaskFactory factory, CancellationToken parent) {
+        mPolicy = Objects.requireNonNull(policy, "policy cannot be null");
+        mFactory = Objects.requireNonNull(factory, "factory cannot be null");
+        mToken = parent.newChild();
+    }
+
+    public TaskScope(Policy policy) {
+        this(policy, new TaskFactory());
+    }
+
+    @Override
+    public <T extends R> ITaskService<T, Void> fork(Callable<T> job) {
+        // Закрытая область не должна зря создавать задачу.
+        mLock.lock();
+        try {
+            ensureOpen();
+        } finally {
+            mLock.unlock();
+        }
+        final ITaskService<T, Void> task = mFactory.createTask(job);
+        fork(task);
+        return task;
+    }
+
+    @Override
+    public <T extends R> ITaskService<T, ?> fork(ITaskService<T, ?> task) {
+        mLock.lock();
+        try {
+            ensureOpen();
+            mTasks.add(task);
+            mPending++;
+        } finally {
+            mLock.unlock();
+        }
+        task.setCancellationParent(mToken);
+        try {
+            task.execute();
+        } catch (Throwable e) {
+            rollback(task);
+            throw e;
+        }
+        // Подписка после execute(): до него getCompletion() вернул бы прошлый запуск,
+        // И join() не стал бы ждать этот. Быстрое завершение не теряется: подписка
+        // На готовый future срабатывает сразу.
+        final CompletableFuture<? extends R> completion = task.getCompletion();
+        if (!completion.isDone() && task.getActiveState() == null) {
+            // Задача вышла из execute(), не начав запуск, например уже уничтожена.
+            rollback(task);
+        } else {
+            completion.whenComplete((result, cause) -> onTaskDone(result, cause));
+        }
+        return task;
+    }
+
+    /*
+     * Запуск не состоялся: задача не должна держать join() и попадать в results().
+     */
+    private void rollback(ITaskService<? extends R, ?> task) {
+        mLock.lock();
+        try {
+            mTasks.remove(task);
+            if (--mPending == 0) {
+                mAllDone.signalAll();
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private void onTaskDone(R result, Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause == null) {
+            if (mSucceeded.compareAndSet(false, true)) {
+                mResult = result;
+                if (mPolicy == Policy.FIRST_SUCCESS) {
+                    shutdown();
+                }
+            }
+        } else if (!(cause instanceof CancellationException) && mFailure.compareAndSet(null, cause)) {
+            if (mPolicy == Policy.FAIL_FAST) {
+                shutdown();
+            }
+        }
+        mLock.lock();
+        try {
+            if (--mPending == 0) {
+                mAllDone.signalAll();
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (mClosed) {
+            throw new IllegalStateException("Scope is closed");
+        }
+    }
+
+    @Override
+    public ITaskScope<R> join() throws InterruptedException {
+        mLock.lock();
+        try {
+            while (mPending > 0) {
+                mAllDone.await();
+            }
+        } finally {
+            mLock.unlock();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean join(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        mLock.lock();
+        try {
+            while (mPending > 0) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = mAllDone.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        mToken.cancel();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return mToken.isCancellationRequested();
+    }
+
+    @Override
+    public ITaskScope<R> throwIfFailed() throws ExecutionException {
+        final Throwable failure = mFailure.get();
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return this;
+    }
+
+    @Override
+    public R result() throws ExecutionException {
+        if (mSucceeded.get()) {
+            return mResult;
+        }
+        throwIfFailed();
+        throw new CancellationException("No task in the scope succeeded");
+    }
+
+    @Override
+    public List<R> results() {
+        final List<ITaskService<? extends R, ?>> tasks;
+        mLock.lock();
+        try {
+            tasks = new ArrayList<>(mTasks);
+        } finally {
+            mLock.unlock();
+        }
+        final List<R> results = new ArrayList<>(tasks.size());
+        for (ITaskService<? extends R, ?> task : tasks) {
+            final CompletableFuture<? extends R> completion = task.getCompletion();
+            R result = null;
+            if (completion.isDone() && !completion.isCompletedExceptionally()) {
+                result = completion.join();
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    @Override
+    public Throwable getFailure() {
+        return mFailure.get();
+    }
+
+    @Override
+    public CancellationToken getCancellationToken() {
+        return mToken;
+    }
+
+    public Policy getPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * Задачи, которые не проверяют токен и не реагируют на прерывание, область
+     * Не остановит: close() дождется только завершения их результата.
+     */
+    @Override
+    public void close() {
+        mLock.lock();
+        try {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+        } finally {
+            mLock.unlock();
+        }
+        try {
+            join();
+        } catch (InterruptedException e) {
+            // Прерванный владелец не ждет, а отменяет оставшиеся задачи.
+            shutdown();
+            Thread.currentThread().interrupt();
+        }
+        mToken.detach();
+    }
+}
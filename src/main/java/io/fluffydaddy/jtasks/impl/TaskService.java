@@ -19,93 +19,638 @@ package io.fluffydaddy.jtasks.impl;
 import io.fluffydaddy.annotation.MainThread;
 import io.fluffydaddy.annotation.NonNull;
 import io.fluffydaddy.jtasks.execution.runtime.ArchTaskExecutor;
+import io.fluffydaddy.jtasks.core.CancellationToken;
+import io.fluffydaddy.jtasks.core.CompletionDispatch;
+import io.fluffydaddy.jtasks.core.ITaskSchedule;
 import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.core.ITaskStage;
 import io.fluffydaddy.jtasks.core.ITaskTracker;
+import io.fluffydaddy.jtasks.core.ITaskTrigger;
+import io.fluffydaddy.jtasks.core.RetryPolicy;
+import io.fluffydaddy.jtasks.core.TaskPriority;
 import io.fluffydaddy.jtasks.core.TrackState;
 import io.fluffydaddy.jtasks.execution.ExecutorFactory;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+import io.fluffydaddy.jtasks.execution.ExecutorTimer;
+import io.fluffydaddy.jtasks.execution.Schedulable;
 import io.fluffydaddy.reactive.livedata.LiveData;
 import io.fluffydaddy.reactive.livedata.MutableLiveData;
 
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.FutureTask;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 
 public abstract class TaskService<R, P> extends ExecutorFactory implements ITaskService<R, P> {
-    private static final ThreadFactory sThreadFactory = new ThreadFactory() {
-        private final AtomicInteger mCount = new AtomicInteger(1);
+    /**
+     * Один запуск задачи, он же {@link java.util.concurrent.Future} этого запуска.
+     * В режиме {@link #setRecyclable(boolean)} сбрасывается и используется повторно,
+     * Поэтому все, что нужно запуску, создается один раз в конструкторе.
+     */
+    private final class Worker implements RunnableFuture<R>, Schedulable {
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int COMPLETED = 2;
+        private static final int CANCELLED = 3;
+        
+        private final AtomicInteger mStatus = new AtomicInteger(NEW);
+        private final ReentrantLock mDoneLock = new ReentrantLock();
+        private final Condition mDoneCondition = mDoneLock.newCondition();
+        private final Runnable mDelivery = this::deliver;
+        private final Runnable mRetry = () -> execute(this);
+        
+        P mParam;
+        long mDeadline;
+        volatile boolean mIsAlive;
+        
+        private R mResult;
+        private Exception mException;
+        private Throwable mFailure;
+        private Thread mRunner;
+        private int mWaiters;
+        private volatile boolean mDelivered;
+        private volatile CompletableFuture<R> mCompletion;
+        private volatile ExecutorTimer.Timeout mTimeout;
+        volatile CancellationToken mToken = CancellationToken.none();
+        // Токен отдан наружу через getCancellationToken(), повторно его использовать нельзя.
+        volatile boolean mTokenExposed;
+        // Номер запуска на этом объекте: таймер прошлого запуска не тронет следующий.
+        volatile int mGeneration;
+        // Связь с трекером, который подключился уже после старта запуска.
+        volatile CancellationToken mTrackerLink;
+        volatile int mAttempts;
+        private long mStartNanos;
+        volatile long mLastAttemptNanos;
+        volatile long mRunNanos = -1;
+        
+        void reset() {
+            mParam = null;
+            mResult = null;
+            mException = null;
+            mFailure = null;
+            mDelivered = false;
+            mCompletion = null;
+            mTimeout = null;
+            mTrackerLink = null;
+            mAttempts = 0;
+            mLastAttemptNanos = 0;
+            mRunNanos = -1;
+            mTokenExposed = false;
+            mGeneration++;
+            mStatus.set(NEW);
+        }
+        
+        void scheduleTimeout(long timeoutNanos) {
+            // Таймер и так выделяет Timeout на каждый запуск с тайм-аутом,
+            // Поэтому номер запуска можно передать в самой команде.
+            final int generation = mGeneration;
+            mTimeout = ExecutorTimer.getDefaultTimer().schedule(() -> expire(generation),
+                    timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        
+        private void cancelTimeout() {
+            final ExecutorTimer.Timeout timeout = mTimeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+        
+        private void expire(int generation) {
+            mDoneLock.lock();
+            try {
+                if (generation != mGeneration || isDone() || mWorker != this) {
+                    return;
+                }
+                // Держим запуск, как ожидающий в get(): пока идет уничтожение,
+                // Объект не сбросят под следующий запуск.
+                mWaiters++;
+            } finally {
+                mDoneLock.unlock();
+            }
+            try {
+                destroy(this);
+            } finally {
+                mDoneLock.lock();
+                try {
+                    mWaiters--;
+                } finally {
+                    mDoneLock.unlock();
+                }
+            }
+        }
+        
+        /**
+         * Future создается только по запросу, чтобы обычный запуск его не выделял.
+         */
+        CompletableFuture<R> completion() {
+            CompletableFuture<R> completion = mCompletion;
+            if (completion != null) {
+                return completion;
+            }
+            mDoneLock.lock();
+            try {
+                completion = mCompletion;
+                if (completion == null) {
+                    mCompletion = completion = new CompletableFuture<>();
+                }
+            } finally {
+                mDoneLock.unlock();
+            }
+            if (isDone()) {
+                complete(completion);
+            }
+            return completion;
+        }
+        
+        void adopt(CompletableFuture<R> completion) {
+            mCompletion = completion;
+        }
+        
+        @Override
+        public long getDeadlineNanos() {
+            return mDeadline;
+        }
+        
+        /**
+         * Можно ли начать следующий запуск на этом же объекте:
+         * Результат уже отдан, и никто не ждет его в {@link #get()}.
+         */
+        boolean isRecyclable() {
+            if (!isDone() || !mDelivered) {
+                return false;
+            }
+            mDoneLock.lock();
+            try {
+                return mWaiters == 0;
+            } finally {
+                mDoneLock.unlock();
+            }
+        }
+        
+        @Override
+        public void run() {
+            if (!mStatus.compareAndSet(NEW, RUNNING)) {
+                return;
+            }
+            final Thread worker = Thread.currentThread();
+            final String workerName = worker.getName();
+            final Thread.UncaughtExceptionHandler workerCrashHandler = worker.getUncaughtExceptionHandler();
+            mDoneLock.lock();
+            try {
+                mRunner = worker;
+            } finally {
+                mDoneLock.unlock();
+            }
+            mIsAlive = true;
+            attachWorker(worker);
+            final CancellationToken token = mToken;
+            final CancellationToken workerToken = CancellationToken.bind(token);
+            final long attemptStart = System.nanoTime();
+            if (mAttempts++ == 0) {
+                mStartNanos = attemptStart;
+            }
+            R result = null;
+            long retryDelay = -1;
+            CompletableFuture<R> pending = null;
+            try {
+                pending = doInBackgroundAsync(mParam);
+                if (pending == null) {
+                    result = doInBackground(mParam);
+                }
+            } catch (Exception tr) {
+                retryDelay = fail(tr, token);
+            } catch (Throwable tr) {
+                mFailure = tr;
+            } finally {
+                CancellationToken.bind(workerToken);
+                detachWorker(worker, workerName, workerCrashHandler);
+                if (pending == null) {
+                    settle(result, retryDelay, attemptStart);
+                }
+            }
+            if (pending != null) {
+                // Поток пула свободен, запуск завершит колбэк.
+                mDoneLock.lock();
+                try {
+                    mRunner = null;
+                } finally {
+                    mDoneLock.unlock();
+                }
+                pending.whenComplete((value, cause) -> {
+                    long delay = -1;
+                    if (cause instanceof CompletionException && cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
+                    if (cause instanceof Exception) {
+                        delay = fail((Exception) cause, token);
+                    } else if (cause != null) {
+                        mFailure = cause;
+                    }
+                    settle(value, delay, attemptStart);
+                });
+            }
+        }
+        
+        /*
+         * Разбирает исключение попытки. Вернет паузу перед повтором или -1.
+         */
+        private long fail(Exception tr, CancellationToken token) {
+            if (tr instanceof CancellationException && token.isCancellationRequested()) {
+                // Выход по своему же отмененному токену — это отмена, а не ошибка.
+                mException = tr;
+                mCanceled.set(true);
+                return -1;
+            }
+            final long retryDelay = retryDelayNanos(tr, token);
+            if (retryDelay < 0) {
+                mException = tr;
+                mCanceled.set(true);
+                handleException(tr);
+            }
+            return retryDelay;
+        }
+        
+        private void settle(R result, long retryDelay, long attemptStart) {
+            mLastAttemptNanos = System.nanoTime() - attemptStart;
+            if (retryDelay < 0 || !retry(retryDelay)) {
+                finish(result);
+            }
+        }
+        
+        private long retryDelayNanos(Exception cause, CancellationToken token) {
+            final RetryPolicy policy = mRetryPolicy;
+            if (policy == null || token.isCancellationRequested()) {
+                return -1;
+            }
+            return policy.nextDelayNanos(mAttempts, cause);
+        }
+        
+        /*
+         * Возвращает запуск в NEW и ставит его повтор на таймер. Если запуск
+         * успели отменить, повтора не будет и он завершается как обычно.
+         */
+        private boolean retry(long delayNanos) {
+            if (!mStatus.compareAndSet(RUNNING, NEW)) {
+                return false;
+            }
+            mDoneLock.lock();
+            try {
+                mRunner = null;
+            } finally {
+                mDoneLock.unlock();
+            }
+            mIsAlive = false;
+            final ITaskTracker tracker = mTracker;
+            if (tracker != null) {
+                tracker.setState(TrackState.RETRYING, TaskService.this);
+            } else {
+                setState(TrackState.RETRYING);
+            }
+            ExecutorTimer.getDefaultTimer().schedule(mRetry, delayNanos, TimeUnit.NANOSECONDS);
+            return true;
+        }
+        
+        private void releaseTokens() {
+            if (!mRecyclable) {
+                mToken.detach();
+            }
+            final CancellationToken link = mTrackerLink;
+            if (link != null) {
+                link.detach();
+            }
+        }
+        
+        private void finish(R result) {
+            releaseTokens();
+            mRunNanos = System.nanoTime() - mStartNanos;
+            cancelTimeout();
+            mResult = result;
+            mStatus.compareAndSet(RUNNING, COMPLETED);
+            mIsAlive = false;
+            // Состояние меняется до того, как проснутся ожидающие, чтобы после get()
+            // Задача уже была завершенной с любого потока.
+            setState(TrackState.FINISHED);
+            final CompletableFuture<R> completion;
+            mDoneLock.lock();
+            try {
+                if (mStatus.get() == CANCELLED && mRunner == Thread.currentThread()) {
+                    // Не оставляем прерывание от cancel(true) потоку пула.
+                    Thread.interrupted();
+                }
+                mRunner = null;
+                if (mWaiters > 0) {
+                    mDoneCondition.signalAll();
+                }
+                completion = mCompletion;
+            } finally {
+                mDoneLock.unlock();
+            }
+            if (completion != null) {
+                complete(completion);
+            }
+            postResult();
+        }
+        
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (mStatus.compareAndSet(NEW, CANCELLED)) {
+                // Задача так и не запустилась или ждет повтора, отдаем пустой результат сами.
+                releaseTokens();
+                mRunNanos = mAttempts > 0 ? System.nanoTime() - mStartNanos : 0;
+                cancelTimeout();
+                setState(TrackState.FINISHED);
+                signalDone();
+                postResult();
+                return true;
+            }
+            if (mStatus.compareAndSet(RUNNING, CANCELLED)) {
+                final CompletableFuture<R> completion;
+                mDoneLock.lock();
+                try {
+                    if (mayInterruptIfRunning && mRunner != null) {
+                        mRunner.interrupt();
+                    }
+                    if (mWaiters > 0) {
+                        mDoneCondition.signalAll();
+                    }
+                    completion = mCompletion;
+                } finally {
+                    mDoneLock.unlock();
+                }
+                if (completion != null) {
+                    complete(completion);
+                }
+                return true;
+            }
+            return false;
+        }
         
         @Override
-        public Thread newThread(@NonNull Runnable r) {
-            return new Thread(r, "Task #" + mCount.getAndIncrement());
+        public boolean isCancelled() {
+            return mStatus.get() == CANCELLED;
+        }
+        
+        @Override
+        public boolean isDone() {
+            return mStatus.get() >= COMPLETED;
+        }
+        
+        @Override
+        public R get() throws InterruptedException, ExecutionException {
+            awaitDone(false, 0L);
+            return report();
+        }
+        
+        @Override
+        public R get(long timeout, @NonNull TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!awaitDone(true, unit.toNanos(timeout))) {
+                throw new TimeoutException();
+            }
+            return report();
+        }
+        
+        private R report() throws ExecutionException {
+            if (mStatus.get() == CANCELLED) {
+                throw new CancellationException();
+            }
+            if (mFailure != null) {
+                throw new ExecutionException(mFailure);
+            }
+            return mResult;
+        }
+        
+        private boolean awaitDone(boolean timed, long nanos) throws InterruptedException {
+            if (isDone()) {
+                return true;
+            }
+            mDoneLock.lock();
+            try {
+                mWaiters++;
+                try {
+                    while (!isDone()) {
+                        if (!timed) {
+                            mDoneCondition.await();
+                        } else if (nanos <= 0L) {
+                            return false;
+                        } else {
+                            nanos = mDoneCondition.awaitNanos(nanos);
+                        }
+                    }
+                    return true;
+                } finally {
+                    mWaiters--;
+                }
+            } finally {
+                mDoneLock.unlock();
+            }
+        }
+        
+        private void signalDone() {
+            final CompletableFuture<R> completion;
+            mDoneLock.lock();
+            try {
+                if (mWaiters > 0) {
+                    mDoneCondition.signalAll();
+                }
+                completion = mCompletion;
+            } finally {
+                mDoneLock.unlock();
+            }
+            if (completion != null) {
+                complete(completion);
+            }
+        }
+        
+        private void complete(CompletableFuture<R> completion) {
+            if (mStatus.get() == CANCELLED) {
+                completion.cancel(false);
+            } else if (mFailure != null) {
+                completion.completeExceptionally(mFailure);
+            } else if (mException != null) {
+                completion.completeExceptionally(mException);
+            } else {
+                completion.complete(mResult);
+            }
+        }
+        
+        private void postResult() {
+            mCompletionDispatch.select(mMainExecutor).execute(mDelivery);
+        }
+        
+        private void deliver() {
+            final R result = mResult;
+            final boolean canceled = isCancelled() || isCanceled();
+            mDelivered = true;
+            try {
+                if (canceled) {
+                    onCanceled(result);
+                } else {
+                    onComplete(result);
+                }
+            } catch (Exception e) {
+                handleException(e);
+            }
         }
-    };
+    }
     
-    private abstract static class WorkerTask<R, P> implements Callable<R> {
-        P mParam;
-        boolean mIsAlive;
+    /**
+     * Подзадача из {@link #fork(Callable)}, выполняется в пуле work-stealing.
+     */
+    private final class Subtask<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+        
+        private final transient Callable<T> mJob;
+        
+        Subtask(Callable<T> job) {
+            mJob = job;
+        }
+        
+        @Override
+        protected T compute() {
+            try {
+                if (isCanceled()) {
+                    throw new CancellationException();
+                }
+                return mJob.call();
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                reportSubtaskFailure(e);
+                throw new CompletionException(e);
+            } catch (Error e) {
+                reportSubtaskFailure(e);
+                throw e;
+            } finally {
+                mSubtasks.remove(this);
+            }
+        }
     }
     
-    private WorkerTask<R, P> mWorker;
-    private FutureTask<R> mFuture;
-    private final MutableLiveData<TrackState> mState;
+    private volatile Worker mWorker;
+    private boolean mRecyclable;
+    private TaskPriority mPriority = TaskPriority.NORMAL;
+    private long mDeadlineNanos;
+    private long mTimeoutNanos;
+    private final AtomicReference<CompletableFuture<R>> mNextCompletion = new AtomicReference<>();
+    private final AtomicReference<TrackState> mState = new AtomicReference<>();
+    private final AtomicReference<MutableLiveData<TrackState>> mLiveState = new AtomicReference<>();
+    private final AtomicBoolean mStatePosted = new AtomicBoolean();
+    private final Runnable mPublishState = this::publishState;
     private final Lock mLocker;
     
     private final AtomicBoolean mCanceled = new AtomicBoolean();
-    private final AtomicBoolean mTaskInvoked = new AtomicBoolean();
+    private final Runnable mTokenCancel = this::onTokenCancelled;
+    private volatile CancellationToken mCancellationParent;
+    private volatile RetryPolicy mRetryPolicy;
+    private final Set<ForkJoinTask<?>> mSubtasks = ConcurrentHashMap.newKeySet();
     
     protected volatile ITaskTracker mTracker;
     private Executor mTaskExecutor;
     private Executor mMainExecutor;
+    private volatile CompletionDispatch mCompletionDispatch = CompletionDispatch.main();
+    private ExecutorPool mTaskPool;
     
     public TaskService() {
-        super(sThreadFactory);
-        mMainExecutor = ArchTaskExecutor.getMainThreadExecutor();
+        // Результаты и состояния задачи всегда приходят в один и тот же главный поток.
+        mMainExecutor = ArchTaskExecutor.getMainThreadExecutor(this);
+        mTaskPool = ExecutorPool.getDefaultPool();
         
-        mState = new MutableLiveData<>();
         mLocker = new ReentrantLock();
     }
     
     private void update() {
-        mWorker = new WorkerTask<>() {
-            @Override
-            public R call() {
-                mWorker.mIsAlive = true;
-                mTaskInvoked.set(true);
-                R result = null;
-                try {
-                    result = doInBackground(mParam);
-                } catch (Exception tr) {
-                    mCanceled.set(true);
-                    handleException(tr);
-                } finally {
-                    postResult(result);
-                }
-                return result;
-            }
-        };
-        mFuture = new FutureTask<>(mWorker) {
-            @Override
-            public void done() {
-                mWorker.mIsAlive = false;
-                try {
-                    postResultIfNotInvoked(get());
-                } catch (CancellationException e) {
-                    postResultIfNotInvoked(null);
-                } catch (Exception e) {
-                    handleException(e);
-                }
+        final Worker worker = mWorker;
+        final boolean recycled = mRecyclable && worker != null && worker.isRecyclable();
+        final CancellationToken previous = worker != null ? worker.mToken : CancellationToken.none();
+        // Токен, который кто-то держит, не оживляем: у нового запуска свой.
+        final boolean reuseToken = recycled && previous != CancellationToken.none() && !worker.mTokenExposed;
+        if (recycled) {
+            worker.reset();
+        } else {
+            mWorker = new Worker();
+        }
+        final CompletableFuture<R> completion = mNextCompletion.getAndSet(null);
+        if (completion != null) {
+            mWorker.adopt(completion);
+        }
+        mCanceled.set(false);
+        // Новый запуск начинает состояния заново: конечное состояние прошлого
+        // Запуска не должно запрещать переходы этого.
+        mState.set(null);
+        
+        // Токен последним: если родитель уже отменен, запуск сразу отменится.
+        final CancellationToken parent = mCancellationParent;
+        if (reuseToken) {
+            // Токен повторно используемой задачи остается записан у родителя между
+            // Запусками, поэтому повторная привязка к тому же родителю ничего не выделяет.
+            previous.reset(parent);
+        } else {
+            previous.detach();
+            mWorker.mToken = parent != null ? parent.newChild(mTokenCancel) : new CancellationToken(mTokenCancel);
+            if (mWorker.mToken.isCancellationRequested()) {
+                // Родитель уже отменен: колбэк сработал раньше, чем токен стал текущим.
+                onTokenCancelled();
             }
-        };
-        mTaskExecutor = Executors.newSingleThreadExecutor(this);
+        }
+    }
+    
+    /*
+     * Отмена пришла сверху, от трекера или родительского токена.
+     * Если задачу отменили напрямую, ее запуск уже завершен и здесь делать нечего.
+     * Колбэк общий для всех токенов задачи, поэтому отмененным должен быть токен
+     * Именно текущего запуска: токен прошлого запуска, который кто-то еще держит,
+     * Новый запуск не отменяет.
+     */
+    private void onTokenCancelled() {
+        final Worker worker = mWorker;
+        if (worker == null || worker.isDone()) {
+            return;
+        }
+        final CancellationToken link = worker.mTrackerLink;
+        if (worker.mToken.isCancellationRequested() || (link != null && link.isCancellationRequested())) {
+            cancel();
+        }
+    }
+    
+    /**
+     * Пул потоков общий для многих задач, поэтому имя и обработчик ошибок
+     * Задачи применяются к потоку только на время выполнения doInBackground.
+     */
+    private void attachWorker(Thread worker) {
+        if (getName() != null) {
+            worker.setName(getName());
+        }
+        if (getCrashHandler() != null) {
+            worker.setUncaughtExceptionHandler(getCrashHandler());
+        }
+    }
+    
+    private void detachWorker(Thread worker, String workerName, Thread.UncaughtExceptionHandler workerCrashHandler) {
+        if (getName() != null) {
+            worker.setName(workerName);
+        }
+        if (getCrashHandler() != null) {
+            worker.setUncaughtExceptionHandler(workerCrashHandler);
+        }
     }
     
     @Override
@@ -120,6 +665,28 @@ public abstract class TaskService<R, P> extends ExecutorFactory implements ITask
         mTaskExecutor = Objects.requireNonNull(taskExecutor, "taskExecutor cannot be null");
     }
     
+    /**
+     * Установит пул потоков, в котором выполняется задача,
+     * Если не задан отдельный {@link #setTaskExecutor(Executor)}.
+     */
+    public void setTaskPool(ExecutorPool taskPool) {
+        mTaskPool = Objects.requireNonNull(taskPool, "taskPool cannot be null");
+    }
+    
+    public ExecutorPool getTaskPool() {
+        return mTaskPool;
+    }
+    
+    @Override
+    public void setCompletionDispatch(CompletionDispatch dispatch) {
+        mCompletionDispatch = Objects.requireNonNull(dispatch, "dispatch cannot be null");
+    }
+    
+    @Override
+    public CompletionDispatch getCompletionDispatch() {
+        return mCompletionDispatch;
+    }
+    
     @Override
     public Executor getMainExecutor() {
         return mMainExecutor;
@@ -127,36 +694,28 @@ public abstract class TaskService<R, P> extends ExecutorFactory implements ITask
     
     @Override
     public Executor getTaskExecutor() {
-        return mTaskExecutor;
+        return mTaskExecutor != null ? mTaskExecutor : mTaskPool;
     }
     
-    private void postResultIfNotInvoked(R result) {
-        final boolean wasTaskInvoked = mTaskInvoked.get();
-        if (!wasTaskInvoked) {
-            postResult(result);
-        }
+    @Override
+    public boolean isAlive() {
+        final Worker worker = mWorker;
+        return worker != null && worker.mIsAlive;
     }
     
-    private void postResult(final R result) {
-        final Runnable command = () -> {
-            try {
-                setState(TrackState.FINISHED);
-                if (isCanceled()) {
-                    onCanceled(result);
-                } else {
-                    onComplete(result);
-                }
-            } catch (Exception e) {
-                handleException(e);
-            }
-        };
-        // Как-то надо выполнить задачу command в главном потоке...
-        mMainExecutor.execute(command);
+    /**
+     * Режим повторного использования: между запусками внутренние объекты задачи
+     * Сбрасываются, а не создаются заново. {@link #get()} при этом всегда
+     * Относится к последнему запуску. Токен из {@link CancellationToken#current()}
+     * Годится только до конца запуска; токен из {@link #getCancellationToken()}
+     * Можно держать дольше, такой токен повторно не используется.
+     */
+    public void setRecyclable(boolean on) {
+        mRecyclable = on;
     }
     
-    @Override
-    public boolean isAlive() {
-        return mWorker.mIsAlive;
+    public boolean isRecyclable() {
+        return mRecyclable;
     }
     
     @Override
@@ -169,30 +728,108 @@ public abstract class TaskService<R, P> extends ExecutorFactory implements ITask
         return hasState(TrackState.FINISHED);
     }
     
+    @Override
+    public void setPriority(TaskPriority priority) {
+        mPriority = Objects.requireNonNull(priority, "priority cannot be null");
+    }
+    
+    @Override
+    public TaskPriority getPriority() {
+        return mPriority;
+    }
+    
+    @Override
+    public void setDeadline(long timeout, TimeUnit unit) {
+        mDeadlineNanos = unit.toNanos(timeout);
+    }
+    
+    @Override
+    public void setTimeout(long timeout, TimeUnit unit) {
+        mTimeoutNanos = unit.toNanos(timeout);
+    }
+    
+    private long deadlineFrom(long now) {
+        final long aging = mPriority.getAgingNanos();
+        return now + (mDeadlineNanos > 0 ? Math.min(aging, mDeadlineNanos) : aging);
+    }
+    
+    /**
+     * Состояние меняется сразу и видно из любого потока; переход, который
+     * {@link TrackState#canMoveTo(TrackState)} запрещает, отклоняется.
+     * В главный поток уходит только обновление {@link #getLiveState()},
+     * И только если его кто-то запросил.
+     */
     @Override
     public boolean setState(TrackState state) {
-        mState.postValue(state);
+        TrackState current;
+        do {
+            current = mState.get();
+            if (current == state) {
+                return true;
+            }
+            if (current != null && !current.canMoveTo(state)) {
+                return false;
+            }
+        } while (!mState.compareAndSet(current, state));
+        if (mLiveState.get() != null) {
+            postState();
+        }
         return true;
     }
     
+    private void postState() {
+        // Одна передача на пачку переходов; значение читается уже в главном потоке,
+        // Поэтому порядок потоков не может оставить там устаревшее состояние.
+        if (mStatePosted.compareAndSet(false, true)) {
+            ArchTaskExecutor.getInstance().postToMainThread(this, mPublishState);
+        }
+    }
+    
+    private void publishState() {
+        mStatePosted.set(false);
+        final TrackState state = mState.get();
+        if (state != null) {
+            mLiveState.get().setValue(state);
+        }
+    }
+    
     @Override
     public boolean hasState(TrackState state) {
-        return getActiveState() == state;
+        return mState.get() == state;
     }
     
+    /**
+     * Создается при первом запросе, до этого переходы не стоят ни одной передачи в главный поток.
+     */
     @Override
     public LiveData<TrackState> getLiveState() {
-        return mState;
+        final MutableLiveData<TrackState> live = mLiveState.get();
+        if (live != null) {
+            return live;
+        }
+        final MutableLiveData<TrackState> created = new MutableLiveData<>();
+        created.setMainThreadKey(this);
+        if (mLiveState.compareAndSet(null, created)) {
+            // Переходы до установки не потеряются: значение читается уже в главном потоке.
+            postState();
+        }
+        return mLiveState.get();
     }
     
     @Override
     public TrackState getActiveState() {
-        return getLiveState().getValue();
+        return mState.get();
     }
     
     @Override
     public void submit(ITaskTracker tracker) {
         mTracker = tracker;
+        mCancellationParent = tracker.getCancellationToken();
+        final Worker worker = mWorker;
+        if (worker != null && !worker.isDone()) {
+            // Запуск уже идет и его токен не знает о трекере.
+            worker.mTrackerLink = mCancellationParent.newChild(mTokenCancel);
+        }
         mTracker.setState(TrackState.SUBMITTED, this);
     }
     
@@ -206,24 +843,51 @@ public abstract class TaskService<R, P> extends ExecutorFactory implements ITask
     @Override
     public final void execute(P param) {
         update();
-        executeOnExecutor(mTaskExecutor, param);
+        executeOnExecutor(param);
     }
     
     @Override
     public void execute() {
         update();
-        executeOnExecutor(mTaskExecutor, null);
+        executeOnExecutor(null);
     }
     
     @Override
     public void execute(@NonNull Runnable command) {
-        mTaskExecutor.execute(command);
+        if (mTaskExecutor != null) {
+            mTaskExecutor.execute(command);
+        } else if (isVirtualSupported()) {
+            // Виртуальный поток дешевле взять новый, чем держать в пуле.
+            newThread(command).start();
+        } else {
+            mTaskPool.execute(command, isDaemon());
+        }
+    }
+    
+    @Override
+    public CompletableFuture<R> getCompletion() {
+        final Worker worker = mWorker;
+        if (worker != null) {
+            return worker.completion();
+        }
+        CompletableFuture<R> completion = mNextCompletion.get();
+        if (completion == null) {
+            completion = new CompletableFuture<>();
+            if (!mNextCompletion.compareAndSet(null, completion)) {
+                return getCompletion();
+            }
+        }
+        return completion;
     }
     
     @Override
     public R get() {
+        final Worker worker = mWorker;
+        if (worker == null) {
+            return null;
+        }
         try {
-            return mFuture.get();
+            return worker.get();
         } catch (Exception e) {
             handleException(e);
             return null;
@@ -232,28 +896,185 @@ public abstract class TaskService<R, P> extends ExecutorFactory implements ITask
     
     @Override
     public R get(long timeInOut, TimeUnit timeInUnit) {
+        final Worker worker = mWorker;
+        if (worker == null) {
+            return null;
+        }
         try {
-            return mFuture.get(timeInOut, timeInUnit);
+            return worker.get(timeInOut, timeInUnit);
         } catch (Exception e) {
             handleException(e);
             return null;
         }
     }
     
-    private void executeOnExecutor(Executor exec, P param) {
-        setState(TrackState.TRACKING);
+    private void executeOnExecutor(P param) {
+        final Worker worker = mWorker;
+        if (worker.isCancelled()) {
+            // Отменен еще до старта через родительский токен.
+            return;
+        }
+        // Через трекер: так он узнает о каждом запуске, а не только о первом.
+        final ITaskTracker tracker = mTracker;
+        if (tracker != null) {
+            tracker.setState(TrackState.TRACKING, this);
+        } else {
+            setState(TrackState.TRACKING);
+        }
         
         onExecute();
         
-        mWorker.mParam = param;
-        exec.execute(mFuture);
+        worker.mParam = param;
+        worker.mDeadline = deadlineFrom(System.nanoTime());
+        if (mTimeoutNanos > 0) {
+            worker.scheduleTimeout(mTimeoutNanos);
+        }
+        execute(worker);
+    }
+    
+    @Override
+    public void setRetryPolicy(RetryPolicy policy) {
+        mRetryPolicy = policy;
+    }
+    
+    @Override
+    public RetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+    
+    @Override
+    public int getAttemptCount() {
+        final Worker worker = mWorker;
+        return worker != null ? worker.mAttempts : 0;
+    }
+    
+    @Override
+    public long getLastAttemptTime(TimeUnit unit) {
+        final Worker worker = mWorker;
+        return worker != null ? unit.convert(worker.mLastAttemptNanos, TimeUnit.NANOSECONDS) : 0;
+    }
+    
+    @Override
+    public long getRunTime(TimeUnit unit) {
+        final Worker worker = mWorker;
+        if (worker == null || worker.mRunNanos < 0) {
+            return -1;
+        }
+        return unit.convert(worker.mRunNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    @Override
+    public CancellationToken getCancellationToken() {
+        final Worker worker = mWorker;
+        if (worker == null) {
+            return CancellationToken.none();
+        }
+        worker.mTokenExposed = true;
+        return worker.mToken;
+    }
+    
+    @Override
+    public void setCancellationParent(CancellationToken parent) {
+        mCancellationParent = parent;
+    }
+    
+    @Override
+    public <U> ITaskStage<U> then(ITaskStage.Step<? super R, ? extends U> step) {
+        return TaskStage.start(this).then(step);
+    }
+    
+    @Override
+    public <U> ITaskStage<U> thenAsync(ITaskStage.Step<? super R, ? extends U> step) {
+        return TaskStage.start(this).thenAsync(step);
+    }
+    
+    @Override
+    public <U> ITaskStage<U> thenAsync(ITaskStage.Step<? super R, ? extends U> step, Executor executor) {
+        return TaskStage.start(this).thenAsync(step, executor);
+    }
+    
+    @Override
+    public <U> ITaskStage<U> handle(BiFunction<? super R, Throwable, ? extends U> handler) {
+        return TaskStage.start(this).handle(handler);
+    }
+    
+    @Override
+    public ITaskTrigger<R, P> conflate() {
+        return TaskTrigger.create(this, TaskTrigger.Mode.CONFLATE, 0, TimeUnit.NANOSECONDS);
+    }
+    
+    @Override
+    public ITaskTrigger<R, P> debounce(long window, TimeUnit unit) {
+        return TaskTrigger.create(this, TaskTrigger.Mode.DEBOUNCE, window, unit);
+    }
+    
+    @Override
+    public ITaskTrigger<R, P> throttle(long window, TimeUnit unit) {
+        return TaskTrigger.create(this, TaskTrigger.Mode.THROTTLE, window, unit);
+    }
+    
+    @Override
+    public ITaskSchedule<R> schedule(long delay, TimeUnit unit) {
+        return TaskSchedule.start(this, TaskSchedule.Mode.ONCE, delay, 0, unit);
+    }
+    
+    @Override
+    public ITaskSchedule<R> scheduleAtFixedRate(long initialDelay, long period, TimeUnit unit) {
+        return TaskSchedule.start(this, TaskSchedule.Mode.FIXED_RATE, initialDelay, period, unit);
+    }
+    
+    @Override
+    public ITaskSchedule<R> scheduleWithFixedDelay(long initialDelay, long delay, TimeUnit unit) {
+        return TaskSchedule.start(this, TaskSchedule.Mode.FIXED_DELAY, initialDelay, delay, unit);
+    }
+    
+    @Override
+    public <T> ForkJoinTask<T> fork(@NonNull Callable<T> subtask) {
+        Objects.requireNonNull(subtask, "subtask cannot be null");
+        
+        final ForkJoinPool pool = mTaskPool.getForkJoinPool();
+        final Subtask<T> task = new Subtask<>(subtask);
+        mSubtasks.add(task);
+        
+        if (isCanceled()) {
+            task.cancel(false);
+            mSubtasks.remove(task);
+        } else if (ForkJoinTask.getPool() == pool) {
+            // Уже в пуле: кладем в локальную очередь, откуда ее могут украсть.
+            task.fork();
+        } else {
+            pool.execute(task);
+        }
+        return task;
+    }
+    
+    private void cancelSubtasks() {
+        for (ForkJoinTask<?> task : mSubtasks) {
+            task.cancel(false);
+        }
+        mSubtasks.clear();
+    }
+    
+    /*
+     * Без перехода состояния: родитель может обработать ошибку из join() и
+     * Завершиться успешно, а EXCEPTED конечно и запретил бы ему FINISHED.
+     */
+    private void reportSubtaskFailure(Throwable cause) {
+        final ITaskTracker tracker = mTracker;
+        if (tracker != null) {
+            tracker.recordSubtaskFailure(this, cause);
+        }
     }
     
     @Override
     public void shutdown(long timeout, TimeUnit unit) {
+        final Worker worker = mWorker;
+        if (worker == null) {
+            return;
+        }
         try {
-            postResultIfNotInvoked(get(timeout, unit));
-            mWorker.mIsAlive = false;
+            worker.get(timeout, unit);
+            worker.mIsAlive = false;
         } catch (Exception e) {
             handleException(e);
         }
@@ -261,12 +1082,23 @@ public abstract class TaskService<R, P> extends ExecutorFactory implements ITask
     
     @Override
     public void destroy() {
+        destroy(mWorker);
+    }
+    
+    /*
+     * Таймер уничтожает свой запуск, а не тот, что успел начаться после него.
+     */
+    private void destroy(Worker worker) {
         setState(TrackState.TERMINATED);
         
         try {
             onTerminate();
-            mCanceled.set(mFuture.cancel(true));
-            mWorker.mIsAlive = false;
+            if (worker != null) {
+                mCanceled.set(worker.cancel(true));
+                worker.mIsAlive = false;
+                worker.mToken.cancel();
+            }
+            cancelSubtasks();
         } catch (Exception e) {
             handleException(e);
         }
@@ -277,7 +1109,12 @@ public abstract class TaskService<R, P> extends ExecutorFactory implements ITask
         setState(TrackState.CANCELED);
         
         try {
-            mCanceled.set(mFuture.cancel(false));
+            final Worker worker = mWorker;
+            if (worker != null) {
+                mCanceled.set(worker.cancel(false));
+                worker.mToken.cancel();
+            }
+            cancelSubtasks();
         } catch (Exception e) {
             handleException(e);
         }
@@ -330,6 +1167,15 @@ public abstract class TaskService<R, P> extends ExecutorFactory implements ITask
     
     }
     
+    /**
+     * Запуск без занятого потока пула: если вернуть future, поток сразу освободится,
+     * А запуск завершится вместе с этим future, с теми же повторами и отменой,
+     * Что и у {@link #doInBackground(Object)}. По умолчанию null, и работает doInBackground.
+     */
+    CompletableFuture<R> doInBackgroundAsync(P param) throws Exception {
+        return null;
+    }
+    
     @Override
     public void onTerminate() {
     
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.fluffydaddy.jtasks.impl;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+
+import io.fluffydaddy.jtasks.core.CancellationToken;
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.core.ITaskStage;
+
+/*
+ * Тонкая обертка над CompletableFuture: продолжения без Async в имени
+ * Выполняются в потоке, который завершил предыдущий шаг, а для Async
+ * По умолчанию берется сама задача как исполнитель, а не общий пул JDK.
+ */
+public class TaskStage<T> implements ITaskStage<T> {
+    private final ITaskService<?, ?> mTask;
+    private final CancellationToken mToken;
+    private final CompletableFuture<T> mCompletion;
+
+    private TaskStage(ITaskService<?, ?> task, CancellationToken token, CompletableFuture<T> completion) {
+        mTask = task;
+        mToken = token;
+        mCompletion = completion;
+    }
+
+    /**
+     * Начало цепочки: последний запуск задачи или, до первого запуска, первый.
+     */
+    static <R> TaskStage<R> start(ITaskService<R, ?> task) {
+        return new TaskStage<>(task, new CancellationToken(), task.getCompletion());
+    }
+
+    @Override
+    public <U> ITaskStage<U> then(Step<? super T, ? extends U> step) {
+        return next(mCompletion.thenApply(value -> apply(step, value)));
+    }
+
+    @Override
+    public <U> ITaskStage<U> thenAsync(Step<? super T, ? extends U> step) {
+        return thenAsync(step, mTask);
+    }
+
+    @Override
+    public <U> ITaskStage<U> thenAsync(Step<? super T, ? extends U> step, Executor executor) {
+        return next(mCompletion.thenApplyAsync(value -> apply(step, value), executor));
+    }
+
+    @Override
+    public <U> ITaskStage<U> handle(BiFunction<? super T, Throwable, ? extends U> handler) {
+        return next(mCompletion.handle((value, cause) -> {
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            final Throwable failure = cause;
+            return apply(result -> handler.apply(result, failure), value);
+        }));
+    }
+
+    private <U> TaskStage<U> next(CompletableFuture<U> completion) {
+        return new TaskStage<>(mTask, mToken, completion);
+    }
+
+    private <V, U> U apply(Step<? super V, ? extends U> step, V value) {
+        if (mToken.isCancellationRequested()) {
+            throw new CancellationException();
+        }
+        final CancellationToken previous = CancellationToken.bind(mToken);
+        try {
+            return step.apply(value);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            CancellationToken.bind(previous);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        // Сначала свой шаг, иначе отмена задачи дошла бы до него как ошибка.
+        mCompletion.cancel(false);
+        mToken.cancel();
+        mTask.cancel();
+    }
+
+    @Override
+    public CancellationToken getCancellationToken() {
+        return mToken;
+    }
+
+    @Override
+    public CompletableFuture<T> getCompletion() {
+        return mCompletion;
+    }
+}
@@ -16,22 +16,39 @@
 
 package io.fluffydaddy.jtasks.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.fluffydaddy.jutils.Array;
+import io.fluffydaddy.jtasks.core.CancellationToken;
+import io.fluffydaddy.jtasks.core.ITaskGroup;
 import io.fluffydaddy.jtasks.core.ITaskService;
 import io.fluffydaddy.jtasks.core.ITaskTracker;
 import io.fluffydaddy.jtasks.core.TrackState;
+import io.fluffydaddy.jtasks.execution.ExecutorTimer;
 
 public class TaskTracker implements ITaskTracker {
     private final Queue<ITaskService> mTrackQueue;
     private final LinkedList<ITaskService> mTasks;
+    private final Map<ITaskService<?, ?>, ITaskService<?, ?>[]> mDependencies;
+    private final Map<ITaskService<?, ?>, CompletableFuture<?>> mStages;
+    private final Map<ITaskService<?, ?>, TaskGroup<?>> mGroups;
+    private final CancellationToken mCancellationToken;
 
     private boolean mTracking;
     private String mTrackTag;
@@ -41,6 +58,15 @@ public class TaskTracker implements ITaskTracker {
     private long mTimeout;
     private TimeUnit mTimeUnit;
 
+    // Срок всей слежки по System.nanoTime(), ноль если срока нет.
+    private volatile long mDeadline;
+    private volatile ExecutorTimer.Timeout mExpiry;
+    private final Set<ITaskService<?, ?>> mRunning = ConcurrentHashMap.newKeySet();
+    private final AtomicLong mRetryCount = new AtomicLong();
+    private final AtomicLong mHedgeCount = new AtomicLong();
+    private final AtomicLong mHedgeWinCount = new AtomicLong();
+    private final AtomicLong mSubtaskFailureCount = new AtomicLong();
+
     private final Thread.UncaughtExceptionHandler mCrashActionRunnable = new Thread.UncaughtExceptionHandler() {
         @Override
         public void uncaughtException(Thread thread, Throwable cause) {
@@ -51,9 +77,24 @@ public class TaskTracker implements ITaskTracker {
     };
 
     public TaskTracker(String tag) {
+        this(tag, new CancellationToken());
+    }
+
+    /**
+     * Дочерний трекер: отмена родителя отменяет и его задачи.
+     */
+    public TaskTracker(String tag, ITaskTracker parent) {
+        this(tag, parent.getCancellationToken().newChild());
+    }
+
+    private TaskTracker(String tag, CancellationToken cancellationToken) {
+        mCancellationToken = cancellationToken;
         mTrackTag = tag;
         mTrackQueue = new ConcurrentLinkedQueue<>();
         mTasks = new LinkedList<>();
+        mDependencies = new ConcurrentHashMap<>();
+        mStages = new ConcurrentHashMap<>();
+        mGroups = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -61,27 +102,264 @@ public class TaskTracker implements ITaskTracker {
         mTrackQueue.add(task);
     }
 
+    @Override
+    public void track(ITaskService<?, ?> task, ITaskService<?, ?>... dependencies) {
+        if (dependencies.length > 0) {
+            mDependencies.put(task, dependencies.clone());
+        }
+        mTrackQueue.add(task);
+    }
+
+    @Override
+    public <R> ITaskGroup<R> trackAll(Collection<? extends ITaskService<R, ?>> tasks) {
+        final TaskGroup<R> group = new TaskGroup<>(new ArrayList<>(tasks));
+        for (ITaskService<R, ?> task : group.getTasks()) {
+            mGroups.put(task, group);
+        }
+        mTrackQueue.addAll(group.getTasks());
+        return group;
+    }
+
     @Override
     public void untrack(ITaskService task) {
         mTrackQueue.remove(task);
+        mDependencies.remove(task);
+        mGroups.remove(task);
+        mRunning.remove(task);
     }
 
     @Override
     public void startTracking() {
+        // Граф проверяется до отправки: цикл не должен оставить слежку запущенной наполовину.
+        if (!mDependencies.isEmpty()) {
+            checkAcyclic();
+        }
         mTracking = true;
 
+        final Set<ITaskService<?, ?>> started = new HashSet<>();
         while (!mTrackQueue.isEmpty()) {
             ITaskService task = mTrackQueue.poll();
             mTasks.add(task);
+            mRunning.add(task);
+            started.add(task);
             try {
                 task.submit(this);
                 if (getState(task) != TrackState.CANCELED) {
                     startTrack(task);
                 }
+                watchGroup(task);
             } catch (Exception e) {
                 task.handleException(e);
             }
         }
+
+        if (mTimeout > 0 && mTimeUnit != null && mExpiry == null) {
+            mDeadline = System.nanoTime() + mTimeUnit.toNanos(mTimeout);
+            mExpiry = ExecutorTimer.getDefaultTimer().schedule(this::expire, mTimeout, mTimeUnit);
+        }
+
+        if (!mDependencies.isEmpty()) {
+            startGraph(started);
+        }
+    }
+
+    /*
+     * Группа ждет запуск, идущий после отправки, а не тот, что уже завершился до нее.
+     * Будущий запуск группа увидит сама, когда задача сообщит о нем через setState().
+     */
+    private void watchGroup(ITaskService<?, ?> task) {
+        final TaskGroup<?> group = mGroups.get(task);
+        if (group != null && !task.getCompletion().isDone()) {
+            group.watch(task);
+        }
+    }
+
+    /*
+     * Срок слежки истек: принудительно завершаем все, что еще не закончилось.
+     * Вызывается в потоке таймера, поэтому не ждет самих задач.
+     */
+    private void expire() {
+        for (ITaskService<?, ?> task : mRunning) {
+            if (!task.getCompletion().isDone()) {
+                task.destroy();
+            }
+        }
+    }
+
+    private void finishTracking() {
+        final ExecutorTimer.Timeout expiry = mExpiry;
+        if (expiry != null) {
+            expiry.cancel();
+        }
+        mExpiry = null;
+        mDeadline = 0;
+        mRunning.clear();
+    }
+
+    /*
+     * Сколько еще можно ждать в наносекундах, или -1 если ждать можно сколько угодно.
+     * Срок общий для всех задач, поэтому ожидание не растет с их числом.
+     */
+    private long remainingNanos(long deadline) {
+        if (deadline == 0) {
+            return -1;
+        }
+        return Math.max(0L, deadline - System.nanoTime());
+    }
+
+    private void checkAcyclic() {
+        final Map<ITaskService<?, ?>, Boolean> visited = new HashMap<>();
+        for (ITaskService<?, ?> task : mDependencies.keySet()) {
+            checkAcyclic(task, visited);
+        }
+    }
+
+    /*
+     * В visited false — задача еще на пути обхода, true — ее поддерево уже проверено.
+     */
+    private void checkAcyclic(ITaskService<?, ?> task, Map<ITaskService<?, ?>, Boolean> visited) {
+        final Boolean checked = visited.putIfAbsent(task, Boolean.FALSE);
+        if (checked != null) {
+            if (!checked) {
+                throw new IllegalStateException("Cyclic dependency on task " + task.getName());
+            }
+            return;
+        }
+        final ITaskService<?, ?>[] dependencies = mDependencies.get(task);
+        if (dependencies != null) {
+            for (ITaskService<?, ?> dependency : dependencies) {
+                checkAcyclic(dependency, visited);
+            }
+        }
+        visited.put(task, Boolean.TRUE);
+    }
+
+    /*
+     * Задачи графа запускаются без ожидания: каждая стадия подписывается
+     * На завершение своих зависимостей и стартует в том потоке, где
+     * Завершилась последняя из них.
+     */
+    private void startGraph(Set<ITaskService<?, ?>> started) {
+        final Map<ITaskService<?, ?>, CompletableFuture<?>> stages = new HashMap<>();
+        final Map<ITaskService<?, ?>, CompletableFuture<Object>> roots = new LinkedHashMap<>();
+
+        for (ITaskService<?, ?> task : started) {
+            if (mDependencies.containsKey(task)) {
+                stageOf(task, started, stages, roots);
+            }
+        }
+        // Корни запускаем только после того, как весь граф подписан.
+        for (Map.Entry<ITaskService<?, ?>, CompletableFuture<Object>> root : roots.entrySet()) {
+            runStage(root.getKey(), null, root.getValue());
+        }
+    }
+
+    private CompletableFuture<?> stageOf(ITaskService<?, ?> task, Set<ITaskService<?, ?>> started,
+                                         Map<ITaskService<?, ?>, CompletableFuture<?>> stages,
+                                         Map<ITaskService<?, ?>, CompletableFuture<Object>> roots) {
+        CompletableFuture<?> stage = stages.get(task);
+        if (stage != null) {
+            return stage;
+        }
+        if (!started.contains(task)) {
+            // Чужая задача: ее запускает кто-то другой, мы только ждем результат.
+            stage = task.getCompletion();
+            stages.put(task, stage);
+            return stage;
+        }
+
+        final ITaskService<?, ?>[] dependencies = mDependencies.get(task);
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        if (dependencies == null) {
+            roots.put(task, result);
+        } else {
+            // Свой токен у стадии, чтобы отменить только ее запуск, а не весь трекер.
+            final CancellationToken token = mCancellationToken.newChild();
+            task.setCancellationParent(token);
+            result.whenComplete((value, cause) -> token.detach());
+            final CompletableFuture<?>[] inputs = new CompletableFuture<?>[dependencies.length];
+            for (int i = 0; i < dependencies.length; i++) {
+                inputs[i] = stageOf(dependencies[i], started, stages, roots);
+            }
+            CompletableFuture.allOf(inputs).whenComplete((ignored, cause) -> {
+                if (cause != null) {
+                    cancelStage(task, token, cause, result);
+                } else {
+                    runStage(task, paramOf(inputs), result);
+                }
+            });
+        }
+
+        stages.put(task, result);
+        mStages.put(task, result);
+        return result;
+    }
+
+    /*
+     * Зависимость не удалась: запускаем задачу под уже отмененным токеном.
+     * Запуск тут же завершается отменой, и ее getCompletion() не повиснет.
+     */
+    private void cancelStage(ITaskService<?, ?> task, CancellationToken token, Throwable cause,
+                             CompletableFuture<Object> result) {
+        token.cancel();
+        try {
+            task.execute();
+        } catch (Exception e) {
+            task.handleException(e);
+        }
+        result.completeExceptionally(cause);
+    }
+
+    /*
+     * Параметр собран из результатов зависимостей, его тип трекер не проверяет.
+     */
+    @SuppressWarnings("unchecked")
+    private <P> void runStage(ITaskService<?, P> task, Object param, CompletableFuture<Object> result) {
+        try {
+            if (param == null) {
+                task.execute();
+            } else {
+                task.execute((P) param);
+            }
+            // Подписка после execute(): до него getCompletion() вернул бы прошлый запуск.
+            final CompletableFuture<?> completion = task.getCompletion();
+            if (!completion.isDone() && task.getActiveState() == null) {
+                // Задача вышла из execute(), не начав запуск: ниже по графу ждать нечего.
+                result.completeExceptionally(new CancellationException("Task " + task.getName() + " did not start"));
+                return;
+            }
+            completion.whenComplete((value, cause) -> {
+                if (cause != null) {
+                    result.completeExceptionally(cause);
+                } else {
+                    result.complete(value);
+                }
+            });
+        } catch (Exception e) {
+            task.handleException(e);
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static Object paramOf(CompletableFuture<?>[] inputs) {
+        if (inputs.length == 1) {
+            return inputs[0].join();
+        }
+        final Object[] results = new Object[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            results[i] = inputs[i].join();
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public void cancel() {
+        mCancellationToken.cancel();
+    }
+
+    @Override
+    public CancellationToken getCancellationToken() {
+        return mCancellationToken;
     }
 
     @Override
@@ -94,6 +372,10 @@ public class TaskTracker implements ITaskTracker {
             stopTrack(task);
             result.add(task);
         }
+        mDependencies.clear();
+        mStages.clear();
+        mGroups.clear();
+        finishTracking();
 
         return result;
     }
@@ -102,23 +384,52 @@ public class TaskTracker implements ITaskTracker {
     public Map<ITaskService, ?> awaitTermination() {
         HashMap<ITaskService, Object> result = new HashMap<>();
 
+        long deadline = mDeadline;
+        if (deadline == 0 && mTimeout > 0 && mTimeUnit != null) {
+            deadline = System.nanoTime() + mTimeUnit.toNanos(mTimeout);
+        }
+
         while (!mTasks.isEmpty()) {
             ITaskService task = mTasks.poll();
+            awaitStage(task, deadline);
             final Object lastRet;
-            if (mTimeout > 0 && mTimeUnit != null) {
-                lastRet = task.get(mTimeout, mTimeUnit);
+            final long remaining = remainingNanos(deadline);
+            if (remaining >= 0) {
+                lastRet = task.get(remaining, TimeUnit.NANOSECONDS);
             } else {
                 lastRet = task.get();
             }
-            if (getState(task) == TrackState.FINISHED) {
+            final TrackState state = getState(task);
+            if (state != null && state.isFinal()) {
                 result.put(task, lastRet);
                 stopTrack(task);
             }
         }
+        finishTracking();
 
         return result;
     }
 
+    /*
+     * Задача из графа может еще не быть запущена, ждем ее стадию.
+     */
+    private void awaitStage(ITaskService<?, ?> task, long deadline) {
+        final CompletableFuture<?> stage = mStages.remove(task);
+        if (stage == null) {
+            return;
+        }
+        try {
+            final long remaining = remainingNanos(deadline);
+            if (remaining >= 0) {
+                stage.get(remaining, TimeUnit.NANOSECONDS);
+            } else {
+                stage.get();
+            }
+        } catch (Exception ignored) {
+            // Ошибку задача уже сообщила сама, а отмену видно по ее состоянию.
+        }
+    }
+
     private void startTrack(ITaskService task) {
         task.setCrashHandler(mCrashActionRunnable);
     }
@@ -129,7 +440,50 @@ public class TaskTracker implements ITaskTracker {
 
     @Override
     public boolean setState(TrackState state, ITaskService from) {
-        return from != null && from.setState(state);
+        final boolean moved = from != null && from.setState(state);
+        if (moved && state == TrackState.RETRYING) {
+            mRetryCount.incrementAndGet();
+        } else if (moved && state == TrackState.TRACKING) {
+            // Начался новый запуск: его future уже на месте.
+            final TaskGroup<?> group = mGroups.get(from);
+            if (group != null) {
+                group.watch(from);
+            }
+        }
+        return moved;
+    }
+
+    @Override
+    public long getRetryCount() {
+        return mRetryCount.get();
+    }
+
+    @Override
+    public void recordHedges(ITaskService<?, ?> from, int hedges, boolean won) {
+        mHedgeCount.addAndGet(hedges);
+        if (won) {
+            mHedgeWinCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public long getHedgeCount() {
+        return mHedgeCount.get();
+    }
+
+    @Override
+    public long getHedgeWinCount() {
+        return mHedgeWinCount.get();
+    }
+
+    @Override
+    public void recordSubtaskFailure(ITaskService<?, ?> from, Throwable cause) {
+        mSubtaskFailureCount.incrementAndGet();
+    }
+
+    @Override
+    public long getSubtaskFailureCount() {
+        return mSubtaskFailureCount.get();
     }
 
     @Override
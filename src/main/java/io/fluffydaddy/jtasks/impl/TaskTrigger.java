@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.fluffydaddy.jtasks.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.core.ITaskTrigger;
+import io.fluffydaddy.jtasks.execution.ExecutorTimer;
+
+/*
+ * Состояние меняется под блокировкой триггера, а execute() задачи зовется уже вне
+ * Ее, потому что onExecute() — пользовательский код. Запуск и его завершение
+ * Всегда чередуются, поэтому два запуска одновременно не бывает.
+ */
+public class TaskTrigger<R, P> implements ITaskTrigger<R, P> {
+    enum Mode {
+        CONFLATE, DEBOUNCE, THROTTLE
+    }
+
+    private final ITaskService<R, P> mTask;
+    private final Mode mMode;
+    private final long mWindowNanos;
+    private final ExecutorTimer mTimer = ExecutorTimer.getDefaultTimer();
+    private final Runnable mWindowClosed = this::onWindowClosed;
+
+    private final Lock mLock = new ReentrantLock();
+
+    // Под mLock.
+    private boolean mRunning;
+    private boolean mPending;
+    private P mPendingParam;
+    private ExecutorTimer.Timeout mWindow;
+    private long mLastStart;
+
+    private final AtomicLong mTriggers = new AtomicLong();
+    private final AtomicLong mRuns = new AtomicLong();
+
+    TaskTrigger(ITaskService<R, P> task, Mode mode, long windowNanos) {
+        mTask = task;
+        mMode = mode;
+        mWindowNanos = windowNanos;
+    }
+
+    static <R, P> TaskTrigger<R, P> create(ITaskService<R, P> task, Mode mode, long window, TimeUnit unit) {
+        if (mode != Mode.CONFLATE && window <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        final TaskTrigger<R, P> trigger = new TaskTrigger<>(task, mode, unit.toNanos(window));
+        // Троттлинг сразу пропускает первый вызов.
+        trigger.mLastStart = System.nanoTime() - trigger.mWindowNanos;
+        return trigger;
+    }
+
+    @Override
+    public void trigger(P param) {
+        mTriggers.incrementAndGet();
+        final boolean start;
+        mLock.lock();
+        try {
+            mPending = true;
+            mPendingParam = param;
+            switch (mMode) {
+                case DEBOUNCE:
+                    // Каждый вызов отодвигает запуск на целое окно тишины.
+                    if (mWindow != null) {
+                        mWindow.cancel();
+                    }
+                    mWindow = mTimer.schedule(mWindowClosed, mWindowNanos, TimeUnit.NANOSECONDS);
+                    start = false;
+                    break;
+                case THROTTLE:
+                    start = mWindow == null && !mRunning && openThrottleWindow();
+                    break;
+                default:
+                    start = !mRunning;
+                    break;
+            }
+            if (start) {
+                mRunning = true;
+            }
+        } finally {
+            mLock.unlock();
+        }
+        if (start) {
+            launch();
+        }
+    }
+
+    /*
+     * Вернет true, если окно с прошлого запуска уже прошло, иначе поставит
+     * Таймер на его остаток.
+     */
+    private boolean openThrottleWindow() {
+        final long remaining = mLastStart + mWindowNanos - System.nanoTime();
+        if (remaining <= 0) {
+            return true;
+        }
+        mWindow = mTimer.schedule(mWindowClosed, remaining, TimeUnit.NANOSECONDS);
+        return false;
+    }
+
+    private void onWindowClosed() {
+        mLock.lock();
+        try {
+            mWindow = null;
+            if (!mPending || mRunning) {
+                // Идущий запуск сам подхватит ожидающий, когда закончится.
+                return;
+            }
+            mRunning = true;
+        } finally {
+            mLock.unlock();
+        }
+        launch();
+    }
+
+    private void onRunDone() {
+        mLock.lock();
+        try {
+            mRunning = false;
+            if (!mPending || mWindow != null) {
+                return;
+            }
+            if (mMode == Mode.THROTTLE && !openThrottleWindow()) {
+                return;
+            }
+            mRunning = true;
+        } finally {
+            mLock.unlock();
+        }
+        launch();
+    }
+
+    private void launch() {
+        final P param;
+        mLock.lock();
+        try {
+            param = mPendingParam;
+            mPendingParam = null;
+            mPending = false;
+            mLastStart = System.nanoTime();
+        } finally {
+            mLock.unlock();
+        }
+        mRuns.incrementAndGet();
+        try {
+            mTask.execute(param);
+        } catch (Throwable e) {
+            // Запуск не состоялся, и завершения не будет: иначе триггер замолчал бы навсегда.
+            mLock.lock();
+            try {
+                mRunning = false;
+            } finally {
+                mLock.unlock();
+            }
+            throw e;
+        }
+        // Подписка после execute(): до него getCompletion() вернул бы прошлый запуск.
+        final CompletableFuture<R> completion = mTask.getCompletion();
+        if (!completion.isDone() && mTask.getActiveState() == null) {
+            // Задача вышла из execute(), не начав запуск, например уже уничтожена.
+            onRunDone();
+        } else {
+            completion.whenComplete((result, cause) -> onRunDone());
+        }
+    }
+
+    @Override
+    public void cancel() {
+        mLock.lock();
+        try {
+            mPending = false;
+            mPendingParam = null;
+            if (mWindow != null) {
+                mWindow.cancel();
+                mWindow = null;
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public ITaskService<R, P> getTask() {
+        return mTask;
+    }
+
+    @Override
+    public long getTriggerCount() {
+        return mTriggers.get();
+    }
+
+    @Override
+    public long getRunCount() {
+        return mRuns.get();
+    }
+}
@@ -1,33 +1,57 @@
 package io.fluffydaddy.reactive;
 
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 import io.fluffydaddy.jutils.Array;
 
 public class DataSubscriptionList implements DataSubscription {
 	private final Array<DataSubscription> subscriptions = new Array<DataSubscription>();
+	private final Lock lock = new ReentrantLock();
 	private boolean canceled;
 	
-	public synchronized boolean add(DataSubscription subscription) {
-		canceled = false;
-		return subscriptions.add(subscription);
+	public boolean add(DataSubscription subscription) {
+		lock.lock();
+		try {
+			canceled = false;
+			return subscriptions.add(subscription);
+		} finally {
+			lock.unlock();
+		}
 	}
 	
-	public synchronized int getActiveSubscriptionCount() {
-		return subscriptions.size();
+	public int getActiveSubscriptionCount() {
+		lock.lock();
+		try {
+			return subscriptions.size();
+		} finally {
+			lock.unlock();
+		}
 	}
 	
 	@Override
-	public synchronized void cancel() {
-		canceled = true;
-		//
-		for (DataSubscription subscription : subscriptions) {
-			subscription.cancel();
+	public void cancel() {
+		lock.lock();
+		try {
+			canceled = true;
+			//
+			for (DataSubscription subscription : subscriptions) {
+				subscription.cancel();
+			}
+			//
+			subscriptions.clear();
+		} finally {
+			lock.unlock();
 		}
-		//
-		subscriptions.clear();
 	}
 
 	@Override
-	public synchronized boolean isCanceled() {
-		return canceled;
+	public boolean isCanceled() {
+		lock.lock();
+		try {
+			return canceled;
+		} finally {
+			lock.unlock();
+		}
 	}
 }
@@ -55,6 +55,8 @@ public abstract class LiveData<T> {
 	@SuppressWarnings("WeakerAccess") /* synthetic access */
 	volatile Object mPendingData = NOT_SET;
 	private int mVersion;
+	// the main thread of this LiveData when the main executor is sharded
+	private volatile Object mMainThreadKey = this;
 
 	private boolean mDispatchingValue;
 	@SuppressWarnings("FieldCanBeLocal")
@@ -195,7 +197,7 @@ public abstract class LiveData<T> {
 		if (!postTask) {
 			return;
 		}
-		ArchTaskExecutor.getInstance().postToMainThread(mPostValueRunnable);
+		ArchTaskExecutor.getInstance().postToMainThread(mMainThreadKey, mPostValueRunnable);
 	}
 
 	/**
@@ -352,8 +354,21 @@ public abstract class LiveData<T> {
 		}
 	}
 
-	static void assertMainThread(String methodName) {
-		if (!ArchTaskExecutor.getInstance().isMainThread()) {
+	/**
+	 * Pins this LiveData to the main thread that serves the given key, so its values are
+	 * dispatched in order with everything else posted under that key. Only matters when the
+	 * main executor has several main threads; by default a LiveData is keyed by itself.
+	 * <p>
+	 * Call it before the LiveData is observed or a value is posted.
+	 *
+	 * @param key The key of the main thread, or null to key by this LiveData.
+	 */
+	public void setMainThreadKey(@Nullable Object key) {
+		mMainThreadKey = key == null ? this : key;
+	}
+
+	void assertMainThread(String methodName) {
+		if (!ArchTaskExecutor.getInstance().isMainThread(mMainThreadKey)) {
 			throw new IllegalStateException("Cannot invoke " + methodName + " on a background"
 					+ " thread");
 		}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2024 fluffydaddy
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.fluffydaddy.jtasks.execution;
+
+import io.fluffydaddy.annotation.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads.
+ * <p>
+ * Java 21+ version of the class, packaged under {@code META-INF/versions/21}.
+ */
+public final class VirtualThreads {
+    private static final ThreadFactory sFactory = Thread.ofVirtual().factory();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns true if the running JVM can create virtual threads.
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Creates an unstarted virtual thread for the command.
+     */
+    @NonNull
+    public static Thread newThread(@NonNull Runnable command) {
+        return sFactory.newThread(command);
+    }
+
+    /**
+     * Creates an executor that starts a new thread from the factory for every command.
+     */
+    @NonNull
+    public static ExecutorService newThreadPerTaskExecutor(@NonNull ThreadFactory factory) {
+        return Executors.newThreadPerTaskExecutor(factory);
+    }
+}
@@ -0,0 +1,150 @@
+package io.fluffydaddy.jtasks.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CancellationTokenTest {
+    @Test
+    public void cancelReachesTheWholeSubtreeOnce() {
+        final AtomicInteger callbacks = new AtomicInteger();
+        final CancellationToken root = new CancellationToken(callbacks::incrementAndGet);
+        final CancellationToken child = root.newChild(callbacks::incrementAndGet);
+        final CancellationToken grandchild = child.newChild(callbacks::incrementAndGet);
+        assertTrue(root.cancel());
+        assertFalse(root.cancel());
+        assertTrue(child.isCancellationRequested());
+        assertTrue(grandchild.isCancellationRequested());
+        assertEquals(3, callbacks.get());
+    }
+
+    @Test
+    public void childCancelLeavesTheParentAlone() {
+        final CancellationToken root = new CancellationToken();
+        final CancellationToken left = root.newChild();
+        final CancellationToken right = root.newChild();
+        assertTrue(left.cancel());
+        assertFalse(root.isCancellationRequested());
+        assertFalse(right.isCancellationRequested());
+    }
+
+    @Test
+    public void childOfACancelledParentStartsCancelled() {
+        final CancellationToken root = new CancellationToken();
+        root.cancel();
+        final AtomicInteger callbacks = new AtomicInteger();
+        final CancellationToken child = root.newChild(callbacks::incrementAndGet);
+        assertTrue(child.isCancellationRequested());
+        assertEquals(1, callbacks.get());
+    }
+
+    @Test
+    public void detachedChildNoLongerFollowsItsParent() {
+        final CancellationToken root = new CancellationToken();
+        final CancellationToken child = root.newChild();
+        child.detach();
+        root.cancel();
+        assertFalse(child.isCancellationRequested());
+    }
+
+    @Test
+    public void noneIsNeverCancelled() {
+        final CancellationToken none = CancellationToken.none();
+        assertFalse(none.cancel());
+        assertFalse(none.isCancellationRequested());
+        none.throwIfCancellationRequested();
+        final CancellationToken child = none.newChild();
+        assertFalse(child.isCancellationRequested());
+        assertTrue(child.cancel());
+        assertFalse(none.isCancellationRequested());
+        try {
+            none.reset(null);
+            fail("expected rejection");
+        } catch (IllegalStateException expected) {
+            // The shared token must stay as it is.
+        }
+    }
+
+    @Test
+    public void throwIfCancellationRequestedThrowsOnlyAfterCancel() {
+        final CancellationToken token = new CancellationToken();
+        token.throwIfCancellationRequested();
+        token.cancel();
+        try {
+            token.throwIfCancellationRequested();
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // Cooperative code stops here.
+        }
+    }
+
+    @Test
+    public void bindSetsTheCurrentTokenAndReturnsThePrevious() {
+        assertSame(CancellationToken.none(), CancellationToken.current());
+        final CancellationToken token = new CancellationToken();
+        final CancellationToken previous = CancellationToken.bind(token);
+        try {
+            assertNull(previous);
+            assertSame(token, CancellationToken.current());
+        } finally {
+            CancellationToken.bind(previous);
+        }
+        assertSame(CancellationToken.none(), CancellationToken.current());
+    }
+
+    @Test
+    public void resetRevivesTheTokenUnderANewParent() {
+        final CancellationToken oldParent = new CancellationToken();
+        final CancellationToken newParent = new CancellationToken();
+        final CancellationToken token = oldParent.newChild();
+        token.cancel();
+        token.reset(newParent);
+        assertFalse(token.isCancellationRequested());
+        oldParent.cancel();
+        assertFalse(token.isCancellationRequested());
+        newParent.cancel();
+        assertTrue(token.isCancellationRequested());
+    }
+
+    @Test(timeout = 10_000)
+    public void childAddedWhileCancellingIsNeverMissed() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            final CancellationToken root = new CancellationToken();
+            final List<CancellationToken> children = new CopyOnWriteArrayList<>();
+            final CountDownLatch go = new CountDownLatch(1);
+            final Thread[] producers = new Thread[3];
+            for (int p = 0; p < producers.length; p++) {
+                producers[p] = new Thread(() -> {
+                    try {
+                        go.await();
+                    } catch (InterruptedException ignored) {
+                        return;
+                    }
+                    for (int i = 0; i < 50; i++) {
+                        children.add(root.newChild());
+                    }
+                });
+                producers[p].start();
+            }
+            go.countDown();
+            root.cancel();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            for (CancellationToken child : children) {
+                assertTrue(child.isCancellationRequested());
+            }
+        }
+    }
+}
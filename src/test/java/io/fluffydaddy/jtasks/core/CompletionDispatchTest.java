@@ -0,0 +1,42 @@
+package io.fluffydaddy.jtasks.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+public class CompletionDispatchTest {
+    private final Executor mMain = command -> { };
+
+    @Test
+    public void mainDispatchUsesTheTaskMainExecutor() {
+        assertSame(mMain, CompletionDispatch.main().select(mMain));
+        assertFalse(CompletionDispatch.main().isInline());
+    }
+
+    @Test
+    public void inlineDispatchRunsInTheCallingThread() {
+        final Thread[] thread = new Thread[1];
+        CompletionDispatch.inline().select(mMain).execute(() -> thread[0] = Thread.currentThread());
+        assertSame(Thread.currentThread(), thread[0]);
+        assertTrue(CompletionDispatch.inline().isInline());
+    }
+
+    @Test
+    public void customDispatchIgnoresTheMainExecutor() {
+        final Executor executor = Runnable::run;
+        final CompletionDispatch dispatch = CompletionDispatch.on(executor);
+        assertSame(executor, dispatch.select(mMain));
+        assertFalse(dispatch.isInline());
+        try {
+            CompletionDispatch.on(null);
+            fail("expected rejection");
+        } catch (NullPointerException expected) {
+            // A dispatch needs somewhere to deliver.
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.fluffydaddy.jtasks.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void backoffGrowsUpToTheLimitThenStops() {
+        final RetryPolicy policy = RetryPolicy.newBuilder()
+                .maxAttempts(6)
+                .backoff(100, 500, TimeUnit.MILLISECONDS)
+                .jitter(0)
+                .build();
+        final IOException cause = new IOException();
+        assertEquals(100 * MS, policy.nextDelayNanos(1, cause));
+        assertEquals(200 * MS, policy.nextDelayNanos(2, cause));
+        assertEquals(400 * MS, policy.nextDelayNanos(3, cause));
+        assertEquals(500 * MS, policy.nextDelayNanos(4, cause));
+        assertEquals(500 * MS, policy.nextDelayNanos(5, cause));
+        assertEquals(-1, policy.nextDelayNanos(6, cause));
+    }
+
+    @Test
+    public void jitterOnlyShortensTheDelay() {
+        final RetryPolicy policy = RetryPolicy.newBuilder()
+                .maxAttempts(2)
+                .backoff(100, 100, TimeUnit.MILLISECONDS)
+                .jitter(0.5)
+                .build();
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            final long delay = policy.nextDelayNanos(1, new IOException());
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        assertTrue(min >= 50 * MS);
+        assertTrue(max <= 100 * MS);
+        // The delays really spread out.
+        assertTrue(max - min > 10 * MS);
+    }
+
+    @Test
+    public void defaultsRetryOnlyCheckedExceptions() {
+        final RetryPolicy policy = RetryPolicy.newBuilder().build();
+        assertEquals(3, policy.getMaxAttempts());
+        assertTrue(policy.nextDelayNanos(1, new IOException()) >= 0);
+        assertEquals(-1, policy.nextDelayNanos(1, new IllegalStateException()));
+        assertEquals(-1, policy.nextDelayNanos(1, new InterruptedException()));
+        assertEquals(-1, policy.nextDelayNanos(1, new CancellationException()));
+    }
+
+    @Test
+    public void retryOnTypesMatchesSubclasses() {
+        final RetryPolicy policy = RetryPolicy.newBuilder()
+                .retryOn(IOException.class, IllegalStateException.class)
+                .build();
+        assertTrue(policy.nextDelayNanos(1, new FileNotFoundException()) >= 0);
+        assertTrue(policy.nextDelayNanos(1, new IllegalStateException()) >= 0);
+        assertEquals(-1, policy.nextDelayNanos(1, new TimeoutException()));
+    }
+
+    @Test
+    public void builderRejectsInvalidSettings() {
+        final RetryPolicy.Builder builder = RetryPolicy.newBuilder();
+        try {
+            builder.maxAttempts(0);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // At least the first attempt runs.
+        }
+        try {
+            builder.backoff(10, 5, TimeUnit.MILLISECONDS);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // The limit is below the first delay.
+        }
+        try {
+            builder.multiplier(0.5);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // The delay never shrinks.
+        }
+        try {
+            builder.jitter(1.5);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // Jitter is a fraction of the delay.
+        }
+    }
+}
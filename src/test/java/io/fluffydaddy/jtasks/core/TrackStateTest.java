@@ -0,0 +1,45 @@
+package io.fluffydaddy.jtasks.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+public class TrackStateTest {
+    private static final EnumSet<TrackState> RUNNING = EnumSet.of(TrackState.TRACKING, TrackState.SUBMITTED,
+            TrackState.UNTRACKED, TrackState.RETRYING, TrackState.HEDGING);
+    private static final EnumSet<TrackState> OUTCOMES = EnumSet.of(TrackState.FINISHED, TrackState.EXCEPTED,
+            TrackState.CANCELED, TrackState.TERMINATED);
+
+    @Test
+    public void runningStatesCanReachEveryOutcome() {
+        for (TrackState from : RUNNING) {
+            for (TrackState to : OUTCOMES) {
+                assertTrue(from + " -> " + to, from.canMoveTo(to));
+            }
+        }
+    }
+
+    @Test
+    public void outcomesAreFinalAndCannotBeLeft() {
+        for (TrackState from : OUTCOMES) {
+            assertTrue(from.isFinal());
+            for (TrackState to : TrackState.values()) {
+                final boolean allowed = from == TrackState.CANCELED && to == TrackState.TERMINATED;
+                assertTrue(from + " -> " + to, from.canMoveTo(to) == allowed);
+            }
+        }
+        for (TrackState state : RUNNING) {
+            assertFalse(state.isFinal());
+        }
+    }
+
+    @Test
+    public void retryingDoesNotGoBackToTracking() {
+        assertFalse(TrackState.RETRYING.canMoveTo(TrackState.TRACKING));
+        assertFalse(TrackState.HEDGING.canMoveTo(TrackState.TRACKING));
+        assertTrue(TrackState.RETRYING.canMoveTo(TrackState.HEDGING));
+    }
+}
@@ -0,0 +1,135 @@
+package io.fluffydaddy.jtasks.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AdaptivePoolSizerTest {
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private ThreadPoolExecutor mExecutor;
+    private AdaptivePoolSizer mSizer;
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        if (mSizer != null) {
+            mSizer.stop();
+        }
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+        }
+    }
+
+    private ThreadPoolExecutor newExecutor(int core, int max) {
+        return new ThreadPoolExecutor(core, max, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    }
+
+    private AdaptivePoolSizer newSizer(int min, int max) {
+        final AdaptivePoolSizer sizer = new AdaptivePoolSizer(mExecutor, min, max);
+        sizer.setSamplePeriod(10, TimeUnit.MILLISECONDS);
+        sizer.setTargetQueueWait(1, TimeUnit.MILLISECONDS);
+        return sizer;
+    }
+
+    private void block() {
+        mExecutor.execute(() -> {
+            try {
+                mRelease.await();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void invalidBoundsAreRejected() {
+        mExecutor = newExecutor(1, 1);
+        try {
+            new AdaptivePoolSizer(mExecutor, 0, 4);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // The pool needs at least one thread.
+        }
+        try {
+            new AdaptivePoolSizer(mExecutor, 4, 2);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // The bounds are inverted.
+        }
+    }
+
+    @Test
+    public void startClampsTheCoreSizeIntoTheBounds() {
+        mExecutor = newExecutor(1, 1);
+        mSizer = newSizer(3, 6);
+        mSizer.start();
+        assertTrue(mSizer.isRunning());
+        assertEquals(3, mExecutor.getCorePoolSize());
+        assertEquals(3, mExecutor.getMaximumPoolSize());
+    }
+
+    @Test(timeout = 10_000)
+    public void backlogGrowsThePoolUpToTheMaximum() throws Exception {
+        mExecutor = newExecutor(1, 1);
+        for (int i = 0; i < 32; i++) {
+            block();
+        }
+        mSizer = newSizer(1, 4);
+        mSizer.start();
+        awaitTrue(() -> mExecutor.getCorePoolSize() == 4);
+        awaitTrue(() -> mExecutor.getActiveCount() == 4);
+        final AdaptivePoolSizer.Stats stats = mSizer.getStats();
+        assertNotNull(stats);
+        assertTrue(stats.grows > 0);
+        // Still backlogged, but the bound holds.
+        Thread.sleep(50);
+        assertEquals(4, mExecutor.getCorePoolSize());
+        assertEquals(4, mExecutor.getMaximumPoolSize());
+    }
+
+    @Test(timeout = 10_000)
+    public void idlePoolShrinksOneThreadAtATimeDownToTheMinimum() throws Exception {
+        mExecutor = newExecutor(3, 3);
+        mSizer = newSizer(1, 4);
+        mSizer.start();
+        awaitTrue(() -> mExecutor.getCorePoolSize() == 2);
+        awaitTrue(() -> mExecutor.getCorePoolSize() == 1);
+        final AdaptivePoolSizer.Stats stats = mSizer.getStats();
+        assertTrue(stats.shrinks >= 2);
+        Thread.sleep(100);
+        assertEquals(1, mExecutor.getCorePoolSize());
+    }
+
+    @Test(timeout = 10_000)
+    public void stoppedSizerNoLongerResizes() throws Exception {
+        mExecutor = newExecutor(1, 1);
+        mSizer = newSizer(1, 4);
+        mSizer.start();
+        mSizer.stop();
+        assertFalse(mSizer.isRunning());
+        for (int i = 0; i < 8; i++) {
+            block();
+        }
+        Thread.sleep(100);
+        assertEquals(1, mExecutor.getCorePoolSize());
+    }
+}
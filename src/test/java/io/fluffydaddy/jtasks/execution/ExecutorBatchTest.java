@@ -0,0 +1,105 @@
+package io.fluffydaddy.jtasks.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ExecutorBatchTest {
+    private final ExecutorService mPool = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        mPool.shutdownNow();
+    }
+
+    @Test(timeout = 10_000)
+    public void runsEveryCommandWithBoundedParallelism() throws Exception {
+        final AtomicInteger hops = new AtomicInteger();
+        final Executor counting = command -> {
+            hops.incrementAndGet();
+            mPool.execute(command);
+        };
+        final ExecutorBatch batch = new ExecutorBatch(counting, 2, 64);
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicInteger maxInside = new AtomicInteger();
+        final int total = 10_000;
+        final CountDownLatch done = new CountDownLatch(total);
+        for (int i = 0; i < total; i++) {
+            batch.execute(() -> {
+                maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                inside.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(maxInside.get() <= 2);
+        // Chunks, not one hop per command.
+        assertTrue("hops " + hops.get(), hops.get() < total / 2);
+        assertEquals(0, batch.getQueueSize());
+    }
+
+    @Test
+    public void rejectedCommandIsWithdrawnBeforeThrowing() {
+        final AtomicBoolean refuse = new AtomicBoolean(true);
+        final Executor target = command -> {
+            if (refuse.get()) {
+                throw new RejectedExecutionException("full");
+            }
+            command.run();
+        };
+        final ExecutorBatch batch = new ExecutorBatch(target, 1, 8);
+        final AtomicInteger ran = new AtomicInteger();
+        try {
+            batch.execute(ran::incrementAndGet);
+            fail("expected rejection");
+        } catch (RejectedExecutionException expected) {
+            // Nobody was draining, so the command went back out.
+        }
+        assertEquals(0, batch.getQueueSize());
+        refuse.set(false);
+        batch.execute(ran::incrementAndGet);
+        // The rejected command never runs later.
+        assertEquals(1, ran.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void refusedNextHopDrainsInline() throws Exception {
+        final AtomicInteger accepted = new AtomicInteger();
+        // Only the very first drainer gets onto the pool; every later hop is refused.
+        final Executor target = command -> {
+            if (accepted.getAndIncrement() > 0) {
+                throw new RejectedExecutionException("full");
+            }
+            mPool.execute(command);
+        };
+        final ExecutorBatch batch = new ExecutorBatch(target, 1, 4);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final int total = 100;
+        final CountDownLatch done = new CountDownLatch(total);
+        batch.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        for (int i = 1; i < total; i++) {
+            batch.execute(done::countDown);
+        }
+        gate.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,200 @@
+package io.fluffydaddy.jtasks.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ExecutorKeyedTest {
+    private final ExecutorPool mPool = new ExecutorPool(4);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    /*
+     * Only collects commands; the test runs them by hand.
+     */
+    private static final class ManualExecutor implements Executor {
+        final Queue<Runnable> mQueue = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        boolean runNext() {
+            final Runnable command = mQueue.poll();
+            if (command == null) {
+                return false;
+            }
+            command.run();
+            return true;
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void eachKeyKeepsSubmissionOrderAcrossProducers() throws Exception {
+        final ExecutorKeyed<Integer> keyed = new ExecutorKeyed<>(mPool, 4);
+        final int keys = 8;
+        final int perProducer = 500;
+        final Map<Integer, List<Integer>> seen = new ConcurrentHashMap<>();
+        final Map<Integer, AtomicInteger> inside = new ConcurrentHashMap<>();
+        final AtomicInteger overlaps = new AtomicInteger();
+        for (int key = 0; key < keys; key++) {
+            seen.put(key, new ArrayList<>());
+            inside.put(key, new AtomicInteger());
+        }
+        final CountDownLatch done = new CountDownLatch(keys * perProducer);
+        final Thread[] producers = new Thread[keys];
+        for (int p = 0; p < keys; p++) {
+            // One producer per key, so the expected order within a key is well defined.
+            final int key = p;
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    final int value = i;
+                    keyed.execute(key, () -> {
+                        if (inside.get(key).incrementAndGet() != 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        seen.get(key).add(value);
+                        inside.get(key).decrementAndGet();
+                        done.countDown();
+                    });
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (int key = 0; key < keys; key++) {
+            final List<Integer> values = seen.get(key);
+            assertEquals(perProducer, values.size());
+            for (int i = 0; i < perProducer; i++) {
+                assertEquals(Integer.valueOf(i), values.get(i));
+            }
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void blockedKeyDoesNotHoldBackOtherKeys() throws Exception {
+        final ExecutorKeyed<String> keyed = new ExecutorKeyed<>(mPool);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch other = new CountDownLatch(1);
+        final AtomicInteger afterBlocked = new AtomicInteger();
+        keyed.execute("slow", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        keyed.execute("slow", afterBlocked::incrementAndGet);
+        keyed.execute("fast", other::countDown);
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+        assertEquals(0, afterBlocked.get());
+        release.countDown();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (keyed.getActiveLanes() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, afterBlocked.get());
+        assertEquals(0, keyed.getActiveLanes());
+    }
+
+    @Test
+    public void drainerYieldsItsThreadAfterABatch() {
+        final ManualExecutor executor = new ManualExecutor();
+        final ExecutorKeyed<String> keyed = new ExecutorKeyed<>(executor, 2);
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final int value = i;
+            keyed.forKey("key").execute(() -> order.add(value));
+        }
+        assertEquals(1, executor.mQueue.size());
+        int hops = 0;
+        while (executor.runNext()) {
+            hops++;
+        }
+        assertEquals(3, hops);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+        assertEquals(0, keyed.getActiveLanes());
+    }
+
+    @Test
+    public void rejectedDrainerRunsOnTheProducer() {
+        final ExecutorKeyed<String> keyed = new ExecutorKeyed<>(command -> {
+            throw new RejectedExecutionException("saturated");
+        }, 2);
+        final List<String> order = new ArrayList<>();
+        final Thread producer = Thread.currentThread();
+        for (int i = 0; i < 5; i++) {
+            final String value = "c" + i;
+            keyed.execute("key", () -> {
+                assertSame(producer, Thread.currentThread());
+                order.add(value);
+            });
+        }
+        assertEquals(Arrays.asList("c0", "c1", "c2", "c3", "c4"), order);
+        assertEquals(0, keyed.getActiveLanes());
+    }
+
+    @Test(timeout = 10_000)
+    public void failingCommandIsReportedAndTheLaneGoesOn() throws Exception {
+        final ExecutorKeyed<String> keyed = new ExecutorKeyed<>(mPool);
+        final List<Throwable> reported = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final IllegalStateException failure = new IllegalStateException("boom");
+        keyed.execute("key", () -> {
+            Thread.currentThread().setUncaughtExceptionHandler((t, e) -> reported.add(e));
+            throw failure;
+        });
+        keyed.execute("key", done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(failure), reported);
+    }
+
+    @Test
+    public void errorHandsTheLaneOnBeforePropagating() {
+        final ManualExecutor executor = new ManualExecutor();
+        final ExecutorKeyed<String> keyed = new ExecutorKeyed<>(executor, 4);
+        final List<String> order = new ArrayList<>();
+        keyed.execute("key", () -> {
+            throw new AssertionError("fatal");
+        });
+        keyed.execute("key", () -> order.add("after"));
+        try {
+            executor.runNext();
+            fail("expected the Error to propagate");
+        } catch (AssertionError expected) {
+            assertEquals("fatal", expected.getMessage());
+        }
+        // The rest of the lane was re-submitted, not lost with the failed drainer.
+        assertTrue(executor.runNext());
+        assertEquals(Arrays.asList("after"), order);
+        assertFalse(executor.runNext());
+        assertEquals(0, keyed.getActiveLanes());
+    }
+}
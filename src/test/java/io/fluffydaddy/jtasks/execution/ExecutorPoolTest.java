@@ -0,0 +1,115 @@
+package io.fluffydaddy.jtasks.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ExecutorPoolTest {
+    private ExecutorPool mPool;
+
+    @After
+    public void tearDown() {
+        if (mPool != null) {
+            mPool.shutdown();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void workersAreBoundedAndReused() throws Exception {
+        mPool = new ExecutorPool(2);
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicInteger maxInside = new AtomicInteger();
+        final int total = 200;
+        final CountDownLatch done = new CountDownLatch(total);
+        for (int i = 0; i < total; i++) {
+            mPool.execute(() -> {
+                threads.add(Thread.currentThread());
+                maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+                inside.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(maxInside.get() <= 2);
+        assertTrue("threads " + threads.size(), threads.size() <= 2);
+    }
+
+    @Test(timeout = 10_000)
+    public void daemonAndRegularWorkRunOnSeparateLanes() throws Exception {
+        mPool = new ExecutorPool(1);
+        final boolean[] daemon = new boolean[2];
+        final CountDownLatch done = new CountDownLatch(2);
+        mPool.execute(() -> {
+            daemon[0] = Thread.currentThread().isDaemon();
+            done.countDown();
+        }, false);
+        mPool.execute(() -> {
+            daemon[1] = Thread.currentThread().isDaemon();
+            done.countDown();
+        }, true);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(daemon[0]);
+        assertTrue(daemon[1]);
+    }
+
+    @Test(timeout = 10_000)
+    public void idleWorkersDieAfterKeepAlive() throws Exception {
+        mPool = new ExecutorPool(new ExecutorFactory() { }, 2, 50, TimeUnit.MILLISECONDS);
+        final CountDownLatch done = new CountDownLatch(2);
+        mPool.execute(done::countDown);
+        mPool.execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(mPool.getActiveThreads() > 0);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mPool.getActiveThreads() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, mPool.getActiveThreads());
+    }
+
+    @Test(timeout = 10_000)
+    public void workersTakeTheFactoryName() throws Exception {
+        final ExecutorFactory factory = new ExecutorFactory() { };
+        factory.setName("Loader");
+        mPool = new ExecutorPool(factory, 1);
+        final String[] name = new String[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        mPool.execute(() -> {
+            name[0] = Thread.currentThread().getName();
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("Loader #1", name[0]);
+    }
+
+    @Test
+    public void shutDownPoolRejectsNewWork() {
+        mPool = new ExecutorPool(1);
+        mPool.shutdown();
+        assertTrue(mPool.isShutdown());
+        try {
+            mPool.execute(() -> { });
+            fail("expected rejection");
+        } catch (RejectedExecutionException expected) {
+            // The lane was created already shut down.
+        }
+        assertTrue(mPool.getForkJoinPool().isShutdown());
+    }
+}
@@ -0,0 +1,141 @@
+package io.fluffydaddy.jtasks.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.core.TaskPriority;
+import io.fluffydaddy.jtasks.impl.TaskFactory;
+
+public class ExecutorPriorityTest {
+    private final ExecutorPriority mExecutor = new ExecutorPriority(
+            new ExecutorFactory() { }, 1, 20, TimeUnit.MILLISECONDS);
+    private final ExecutorPool mPool = new ExecutorPool(1);
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        mExecutor.shutdown();
+        mPool.shutdown();
+    }
+
+    private static final class Deadline implements Runnable, Schedulable {
+        final String mName;
+        final long mDeadline;
+        final List<String> mOrder;
+        final CountDownLatch mDone;
+
+        Deadline(String name, long deadline, List<String> order, CountDownLatch done) {
+            mName = name;
+            mDeadline = deadline;
+            mOrder = order;
+            mDone = done;
+        }
+
+        @Override
+        public void run() {
+            mOrder.add(mName);
+            mDone.countDown();
+        }
+
+        @Override
+        public long getDeadlineNanos() {
+            return mDeadline;
+        }
+    }
+
+    /*
+     * Occupies the only worker so that the following commands pile up in the queue.
+     */
+    private void occupy() throws InterruptedException {
+        final CountDownLatch busy = new CountDownLatch(1);
+        mExecutor.execute(() -> {
+            busy.countDown();
+            try {
+                mRelease.await();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void earliestDeadlineRunsFirst() throws Exception {
+        occupy();
+        final List<String> order = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(3);
+        final long now = System.nanoTime();
+        mExecutor.execute(new Deadline("late", now + 3_000_000_000L, order, done));
+        mExecutor.execute(new Deadline("soon", now + 1_000_000_000L, order, done));
+        mExecutor.execute(new Deadline("middle", now + 2_000_000_000L, order, done));
+        assertEquals(3, mExecutor.getQueueSize());
+        mRelease.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("soon", "middle", "late"), order);
+    }
+
+    @Test(timeout = 10_000)
+    public void equalDeadlinesKeepSubmissionOrder() throws Exception {
+        occupy();
+        final List<String> order = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(4);
+        final long deadline = System.nanoTime() + 1_000_000_000L;
+        for (String name : new String[] { "a", "b", "c", "d" }) {
+            mExecutor.execute(new Deadline(name, deadline, order, done));
+        }
+        mRelease.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), order);
+    }
+
+    @Test(timeout = 10_000)
+    public void waitingWorkAgesPastNewerUrgentWork() throws Exception {
+        occupy();
+        final List<String> order = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        // A plain command is due one window (20ms) after it was queued.
+        mExecutor.execute(() -> {
+            order.add("plain");
+            done.countDown();
+        });
+        Thread.sleep(50);
+        // Urgent relative to now, yet still later than the plain command's deadline.
+        mExecutor.execute(new Deadline("urgent", System.nanoTime() + 10_000_000L, order, done));
+        mRelease.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("plain", "urgent"), order);
+    }
+
+    @Test(timeout = 10_000)
+    public void taskPriorityOrdersQueuedTasks() throws Exception {
+        occupy();
+        final TaskFactory factory = new TaskFactory(mPool);
+        final List<TaskPriority> order = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(3);
+        for (TaskPriority priority : new TaskPriority[] {
+                TaskPriority.BULK, TaskPriority.NORMAL, TaskPriority.CRITICAL }) {
+            final ITaskService<Void, Void> task = factory.createTask(() -> {
+                order.add(priority);
+                done.countDown();
+                return null;
+            });
+            task.setTaskExecutor(mExecutor);
+            task.setPriority(priority);
+            task.execute();
+        }
+        mRelease.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(TaskPriority.CRITICAL, TaskPriority.NORMAL, TaskPriority.BULK), order);
+    }
+}
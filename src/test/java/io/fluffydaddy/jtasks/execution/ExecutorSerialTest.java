@@ -0,0 +1,172 @@
+package io.fluffydaddy.jtasks.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ExecutorSerialTest {
+    private final List<ExecutorService> mPools = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (ExecutorService pool : mPools) {
+            pool.shutdownNow();
+        }
+    }
+
+    private <T extends ExecutorService> T track(T pool) {
+        mPools.add(pool);
+        return pool;
+    }
+
+    @Test(timeout = 20_000)
+    public void runsCommandsOneAtATimeInSubmissionOrder() throws Exception {
+        final ExecutorSerial serial = new ExecutorSerial(track(Executors.newFixedThreadPool(4)));
+        final int producers = 4;
+        final int perProducer = 5_000;
+        final List<List<Integer>> seen = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            seen.add(new ArrayList<>());
+        }
+        final AtomicBoolean overlap = new AtomicBoolean();
+        final AtomicInteger inside = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(producers * perProducer);
+        final List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final List<Integer> mine = seen.get(p);
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    final int value = i;
+                    serial.execute(() -> {
+                        if (inside.incrementAndGet() != 1) {
+                            overlap.set(true);
+                        }
+                        // Only the serial touches the list, so it needs no lock.
+                        mine.add(value);
+                        inside.decrementAndGet();
+                        done.countDown();
+                    });
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        assertTrue(done.await(15, TimeUnit.SECONDS));
+        assertFalse(overlap.get());
+        for (List<Integer> mine : seen) {
+            assertEquals(perProducer, mine.size());
+            for (int i = 0; i < perProducer; i++) {
+                assertEquals(Integer.valueOf(i), mine.get(i));
+            }
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void throwingCommandDoesNotStopTheSerial() throws Exception {
+        final ThreadPoolExecutor pool = track(new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(16)));
+        final ExecutorSerial serial = new ExecutorSerial(pool);
+        final CountDownLatch after = new CountDownLatch(1);
+        serial.execute(() -> {
+            throw new IllegalStateException("expected by the test");
+        });
+        serial.execute(after::countDown);
+        assertTrue(after.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void refusedHopIsRetriedInsteadOfFailing() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final RejectionPolicy policy = RejectionPolicy.abort();
+        final ThreadPoolExecutor pool = track(new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1), policy));
+        pool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pool.execute(() -> { });
+
+        // The pool is full: the serial accepts the commands anyway and runs them once it gets in.
+        final ExecutorSerial serial = new ExecutorSerial(pool);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+            serial.execute(() -> {
+                order.add(value);
+                done.countDown();
+            });
+        }
+        assertTrue(policy.getRejectedCount() > 0);
+        Thread.sleep(50);
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void drainerKeepsGoingWhenTheNextHopIsRefused() throws Exception {
+        final RejectionPolicy policy = RejectionPolicy.abort();
+        final ThreadPoolExecutor pool = track(new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1), policy));
+        final ExecutorSerial serial = new ExecutorSerial(pool);
+        final CountDownLatch blockerStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final int total = ExecutorSerial.MAX_BATCH_SIZE * 3;
+        final CountDownLatch done = new CountDownLatch(total);
+        serial.execute(() -> {
+            // While the serial holds one worker, fill the other worker and the queue.
+            pool.execute(() -> {
+                blockerStarted.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            try {
+                assertTrue(blockerStarted.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            pool.execute(() -> { });
+        });
+        for (int i = 0; i < total; i++) {
+            serial.execute(done::countDown);
+        }
+        // Every later hop is refused, so the first drainer has to run all of them itself.
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test(timeout = 10_000)
+    public void shutDownPoolDoesNotSpinTheTimer() throws Exception {
+        final ThreadPoolExecutor pool = track(new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1)));
+        pool.shutdown();
+        final ExecutorSerial serial = new ExecutorSerial(pool);
+        final AtomicInteger ran = new AtomicInteger();
+        serial.execute(ran::incrementAndGet);
+        Thread.sleep(50);
+        assertEquals(0, ran.get());
+    }
+}
@@ -0,0 +1,109 @@
+package io.fluffydaddy.jtasks.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ExecutorTimerTest {
+    private final AtomicReference<Throwable> mUncaught = new AtomicReference<>();
+    private final ExecutorTimer mTimer = new ExecutorTimer(newFactory(), 1, TimeUnit.MILLISECONDS, 8);
+
+    @After
+    public void tearDown() {
+        mTimer.stop();
+    }
+
+    private ThreadFactory newFactory() {
+        return command -> {
+            final Thread thread = new Thread(command, "Test Timer");
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((t, e) -> mUncaught.set(e));
+            return thread;
+        };
+    }
+
+    @Test(timeout = 10_000)
+    public void firesNoEarlierThanTheDelay() throws Exception {
+        final CountDownLatch fired = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        final ExecutorTimer.Timeout timeout = mTimer.schedule(fired::countDown, 30, TimeUnit.MILLISECONDS);
+        assertEquals(1, mTimer.getPendingTimeouts());
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(timeout.isExpired());
+        assertEquals(0, mTimer.getPendingTimeouts());
+    }
+
+    @Test(timeout = 10_000)
+    public void firesInDeadlineOrderAcrossRounds() throws Exception {
+        // Eight slots of 1ms: the later delays wrap around the wheel several times.
+        final List<Integer> order = new CopyOnWriteArrayList<>();
+        final CountDownLatch fired = new CountDownLatch(4);
+        for (int delay : new int[] { 60, 5, 35, 20 }) {
+            mTimer.schedule(() -> {
+                order.add(delay);
+                fired.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(5, 20, 35, 60), order);
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelledTimeoutNeverFires() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final ExecutorTimer.Timeout timeout = mTimer.schedule(runs::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, mTimer.getPendingTimeouts());
+
+        final CountDownLatch later = new CountDownLatch(1);
+        mTimer.schedule(later::countDown, 60, TimeUnit.MILLISECONDS);
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test(timeout = 10_000)
+    public void expiredTimeoutCannotBeCancelled() throws Exception {
+        final CountDownLatch fired = new CountDownLatch(1);
+        final ExecutorTimer.Timeout timeout = mTimer.schedule(fired::countDown, 0, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+        assertFalse(timeout.isCancelled());
+    }
+
+    @Test(timeout = 10_000)
+    public void failingTaskDoesNotStopTheTimer() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("boom");
+        mTimer.schedule(() -> {
+            throw failure;
+        }, 5, TimeUnit.MILLISECONDS);
+        final CountDownLatch fired = new CountDownLatch(1);
+        mTimer.schedule(fired::countDown, 30, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertEquals(failure, mUncaught.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void stoppedTimerDropsPendingTimeouts() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        mTimer.schedule(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        mTimer.stop();
+        Thread.sleep(100);
+        assertEquals(0, runs.get());
+    }
+}
@@ -0,0 +1,73 @@
+package io.fluffydaddy.jtasks.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class MpscQueueTest {
+    @Test
+    public void pollsInOfferOrder() {
+        final MpscQueue<Integer> queue = new MpscQueue<>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNull() {
+        new MpscQueue<>().offer(null);
+    }
+
+    @Test(timeout = 20_000)
+    public void keepsPerProducerOrderUnderContention() throws Exception {
+        final MpscQueue<long[]> queue = new MpscQueue<>();
+        final int producers = 4;
+        final int perProducer = 100_000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final long producer = p;
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    queue.offer(new long[] {producer, i});
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        final long[] next = new long[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            final long[] item = queue.poll();
+            if (item == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertEquals(next[(int) item[0]]++, item[1]);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,180 @@
+package io.fluffydaddy.jtasks.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RejectionPolicyTest {
+    private final List<ThreadPoolExecutor> mPools = new ArrayList<>();
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        for (ThreadPoolExecutor pool : mPools) {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+     * One worker, blocked until the test releases it, and a queue of the given capacity.
+     */
+    private ThreadPoolExecutor saturatedPool(int capacity, RejectionPolicy policy) throws InterruptedException {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(capacity), policy);
+        mPools.add(pool);
+        final CountDownLatch started = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                mRelease.await();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return pool;
+    }
+
+    @Test
+    public void abortThrowsAndCounts() throws Exception {
+        final RejectionPolicy policy = RejectionPolicy.abort();
+        final ThreadPoolExecutor pool = saturatedPool(1, policy);
+        pool.execute(() -> { });
+        try {
+            pool.execute(() -> { });
+            fail("expected rejection");
+        } catch (RejectedExecutionException expected) {
+            // The queue is full.
+        }
+        assertEquals(1, policy.getRejectedCount());
+        assertEquals(1, policy.getAbortedCount());
+    }
+
+    @Test
+    public void callerRunsInSubmittingThread() throws Exception {
+        final RejectionPolicy policy = RejectionPolicy.callerRuns();
+        final ThreadPoolExecutor pool = saturatedPool(1, policy);
+        pool.execute(() -> { });
+        final Thread[] ranOn = new Thread[1];
+        pool.execute(() -> ranOn[0] = Thread.currentThread());
+        assertEquals(Thread.currentThread(), ranOn[0]);
+        assertEquals(1, policy.getCallerRunsCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void blockGivesUpAfterTimeout() throws Exception {
+        final RejectionPolicy policy = RejectionPolicy.block(50, TimeUnit.MILLISECONDS);
+        final ThreadPoolExecutor pool = saturatedPool(1, policy);
+        pool.execute(() -> { });
+        final long start = System.nanoTime();
+        try {
+            pool.execute(() -> { });
+            fail("expected rejection");
+        } catch (RejectedExecutionException expected) {
+            // No space was freed in time.
+        }
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, policy.getBlockedCount());
+        assertEquals(1, policy.getAbortedCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void blockWaitsForSpace() throws Exception {
+        final RejectionPolicy policy = RejectionPolicy.block(5, TimeUnit.SECONDS);
+        final ThreadPoolExecutor pool = saturatedPool(1, policy);
+        pool.execute(() -> { });
+        final CountDownLatch ran = new CountDownLatch(1);
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+                // The test times out on its own.
+            }
+            mRelease.countDown();
+        }).start();
+        pool.execute(ran::countDown);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertEquals(0, policy.getAbortedCount());
+    }
+
+    @Test
+    public void overflowHandsCommandToOverflowExecutor() throws Exception {
+        final List<Runnable> spilled = new ArrayList<>();
+        final RejectionPolicy policy = RejectionPolicy.overflow(spilled::add);
+        final ThreadPoolExecutor pool = saturatedPool(1, policy);
+        pool.execute(() -> { });
+        final Runnable command = () -> { };
+        pool.execute(command);
+        assertEquals(1, spilled.size());
+        assertEquals(command, spilled.get(0));
+        assertEquals(1, policy.getOverflowCount());
+    }
+
+    @Test
+    public void dropOldestDiscardsHeadOfQueue() throws Exception {
+        final RejectionPolicy policy = RejectionPolicy.dropOldest();
+        final ThreadPoolExecutor pool = saturatedPool(1, policy);
+        final Runnable oldest = () -> { };
+        final Runnable newest = () -> { };
+        pool.execute(oldest);
+        pool.execute(newest);
+        assertEquals(1, pool.getQueue().size());
+        assertEquals(newest, pool.getQueue().peek());
+        assertEquals(1, policy.getDroppedCount());
+    }
+
+    @Test(timeout = 20_000)
+    public void dropOldestWithSerialsNeitherCascadesNorLosesCount() throws Exception {
+        final RejectionPolicy policy = RejectionPolicy.dropOldest();
+        final ThreadPoolExecutor pool = saturatedPool(2, policy);
+        final int serials = 6;
+        final int perSerial = 200;
+        final AtomicInteger ran = new AtomicInteger();
+        final List<Executor> lanes = new ArrayList<>();
+        for (int i = 0; i < serials; i++) {
+            lanes.add(new ExecutorSerial(pool));
+        }
+        long maxRejections = 0;
+        for (int n = 0; n < perSerial; n++) {
+            for (Executor lane : lanes) {
+                final long before = policy.getRejectedCount();
+                lane.execute(ran::incrementAndGet);
+                maxRejections = Math.max(maxRejections, policy.getRejectedCount() - before);
+            }
+        }
+        // The retried command gets the freed slot on the first try, no cascade.
+        assertEquals(1, maxRejections);
+        // While the pool is blocked, at most two serials sit in its queue; the rest were dropped.
+        assertTrue(pool.getQueue().size() <= 2);
+        mRelease.countDown();
+
+        final long total = (long) serials * perSerial;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ran.get() + policy.getDroppedCount() < total && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(total, ran.get() + policy.getDroppedCount());
+        assertTrue(ran.get() > 0);
+
+        // Dropped serials keep accepting work. One at a time, so the pool has room for each.
+        for (Executor lane : lanes) {
+            final CountDownLatch after = new CountDownLatch(1);
+            lane.execute(after::countDown);
+            assertTrue(after.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
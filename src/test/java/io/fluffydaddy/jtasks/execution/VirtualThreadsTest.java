@@ -0,0 +1,72 @@
+package io.fluffydaddy.jtasks.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+    private ExecutorPool mPool;
+
+    @After
+    public void tearDown() {
+        if (mPool != null) {
+            mPool.shutdown();
+        }
+    }
+
+    @Test
+    public void factoryIsVirtualOnlyWhereSupported() {
+        final ExecutorFactory factory = new ExecutorFactory() { };
+        assertFalse(factory.isVirtualSupported());
+        factory.setVirtual(true);
+        assertTrue(factory.isVirtual());
+        assertEquals(VirtualThreads.isSupported(), factory.isVirtualSupported());
+    }
+
+    @Test(timeout = 10_000)
+    public void virtualPoolFallsBackToABoundedPool() throws Exception {
+        assumeFalse(VirtualThreads.isSupported());
+        mPool = ExecutorPool.newVirtualPool("Fallback");
+        assertFalse(mPool.isVirtual());
+        final String[] name = new String[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        mPool.execute(() -> {
+            name[0] = Thread.currentThread().getName();
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("Fallback #1", name[0]);
+        assertEquals(1, mPool.getActiveThreads());
+    }
+
+    @Test(timeout = 10_000)
+    public void virtualPoolIgnoresThePoolSize() throws Exception {
+        assumeTrue(VirtualThreads.isSupported());
+        mPool = ExecutorPool.newVirtualPool("Virtual");
+        assertTrue(mPool.isVirtual());
+        final int commands = ExecutorPool.DEFAULT_POOL_SIZE * 4;
+        final CountDownLatch started = new CountDownLatch(commands);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < commands; i++) {
+            mPool.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        // Every command has its own thread, so none waits for a free worker.
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+}
@@ -0,0 +1,211 @@
+package io.fluffydaddy.jtasks.execution.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+import io.fluffydaddy.jtasks.execution.ExecutorTimer;
+import io.fluffydaddy.jtasks.factory.Job;
+import io.fluffydaddy.jtasks.impl.TaskFactory;
+
+public class EventLoopTest {
+    private final List<Throwable> mReported = new CopyOnWriteArrayList<>();
+    private final EventLoop mLoop = new EventLoop(command -> {
+        final Thread thread = new Thread(command, "Test Loop");
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((t, e) -> mReported.add(e));
+        return thread;
+    }, 4);
+
+    @After
+    public void tearDown() {
+        mLoop.quit();
+    }
+
+    /*
+     * Waits until everything posted so far has run.
+     */
+    private void sync() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        mLoop.post(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void postsRunInOrderOnTheLoopThread() throws Exception {
+        final List<Integer> order = new ArrayList<>();
+        final AtomicBoolean onLoop = new AtomicBoolean(true);
+        // More posts than one batch, so the loop takes several turns.
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+            mLoop.execute(() -> {
+                onLoop.compareAndSet(true, mLoop.isCurrentThread());
+                order.add(value);
+            });
+        }
+        sync();
+        assertTrue(onLoop.get());
+        assertEquals(100, order.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+        assertFalse(mLoop.isCurrentThread());
+    }
+
+    @Test(timeout = 10_000)
+    public void delayedPostsRunByDueTimeAfterImmediatePosts() throws Exception {
+        final List<String> order = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(4);
+        final long start = System.nanoTime();
+        mLoop.postDelayed(() -> {
+            order.add("60ms");
+            done.countDown();
+        }, 60, TimeUnit.MILLISECONDS);
+        mLoop.postDelayed(() -> {
+            order.add("20ms");
+            done.countDown();
+        }, 20, TimeUnit.MILLISECONDS);
+        mLoop.postAtTime(() -> {
+            order.add("40ms");
+            done.countDown();
+        }, start + TimeUnit.MILLISECONDS.toNanos(40));
+        mLoop.post(() -> {
+            order.add("now");
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(60));
+        assertEquals(Arrays.asList("now", "20ms", "40ms", "60ms"), order);
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelledDelayedPostNeverRuns() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final ExecutorTimer.Timeout message = mLoop.postDelayed(runs::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+        assertTrue(message.cancel());
+        assertTrue(message.isCancelled());
+        final CountDownLatch later = new CountDownLatch(1);
+        mLoop.postDelayed(later::countDown, 60, TimeUnit.MILLISECONDS);
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertFalse(message.isExpired());
+    }
+
+    @Test(timeout = 10_000)
+    public void expiredPostCannotBeCancelled() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final ExecutorTimer.Timeout message = mLoop.postDelayed(done::countDown, 1, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(message.isExpired());
+        assertFalse(message.cancel());
+    }
+
+    @Test(timeout = 10_000)
+    public void failuresAreReportedAndTheLoopGoesOn() throws Exception {
+        final IllegalStateException exception = new IllegalStateException("boom");
+        final AssertionError error = new AssertionError("fatal");
+        mLoop.post(() -> {
+            throw exception;
+        });
+        mLoop.post(() -> {
+            throw error;
+        });
+        sync();
+        assertEquals(Arrays.asList(exception, error), mReported);
+        assertFalse(mLoop.isQuit());
+    }
+
+    @Test(timeout = 10_000)
+    public void idleHandlerRunsUntilItAsksToBeRemoved() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch twice = new CountDownLatch(2);
+        mLoop.addIdleHandler(() -> {
+            calls.incrementAndGet();
+            twice.countDown();
+            return twice.getCount() > 0;
+        });
+        mLoop.post(() -> { });
+        sync();
+        mLoop.post(() -> { });
+        assertTrue(twice.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            sync();
+        }
+        assertEquals(2, calls.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void quitLoopRejectsPosts() throws Exception {
+        mLoop.quit();
+        assertTrue(mLoop.isQuit());
+        try {
+            mLoop.post(() -> { });
+            fail("expected rejection");
+        } catch (RejectedExecutionException expected) {
+            // Nothing would run the post any more.
+        }
+        mLoop.getThread().join(5_000);
+        assertFalse(mLoop.getThread().isAlive());
+    }
+
+    @Test(timeout = 10_000)
+    public void taskResultsArriveOnTheLoop() throws Exception {
+        final ExecutorPool pool = new ExecutorPool(1);
+        final EventLoopTaskExecutor executor = new EventLoopTaskExecutor(mLoop, pool);
+        final AtomicBoolean onLoop = new AtomicBoolean();
+        final CountDownLatch finished = new CountDownLatch(1);
+        ArchTaskExecutor.getInstance().setDelegate(executor);
+        try {
+            final ITaskService<String, Void> task = new TaskFactory(pool).createTask(new Job<String, Void>() {
+                @Override
+                public String doInBackground(Void param) {
+                    return "done";
+                }
+
+                @Override
+                public void onFinishing(String result) {
+                    onLoop.set(executor.isMainThread());
+                    finished.countDown();
+                }
+
+                @Override
+                public void onBeginning() {
+                }
+            });
+            task.execute();
+            assertTrue(finished.await(5, TimeUnit.SECONDS));
+            assertTrue(onLoop.get());
+
+            final AtomicBoolean ran = new AtomicBoolean();
+            final AtomicBoolean inline = new AtomicBoolean();
+            final CountDownLatch done = new CountDownLatch(1);
+            mLoop.post(() -> {
+                executor.executeOnMainThread(() -> ran.set(true));
+                // Already on the main thread, so it ran right away.
+                inline.set(ran.get());
+                done.countDown();
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(inline.get());
+        } finally {
+            ArchTaskExecutor.getInstance().setDelegate(null);
+            pool.shutdown();
+        }
+    }
+}
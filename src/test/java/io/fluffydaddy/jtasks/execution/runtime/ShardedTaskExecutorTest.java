@@ -0,0 +1,163 @@
+package io.fluffydaddy.jtasks.execution.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+import io.fluffydaddy.jtasks.factory.Job;
+import io.fluffydaddy.jtasks.impl.TaskFactory;
+
+public class ShardedTaskExecutorTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+    private final ShardedTaskExecutor mExecutor = new ShardedTaskExecutor(4, mPool);
+
+    @After
+    public void tearDown() {
+        ArchTaskExecutor.getInstance().setDelegate(null);
+        mExecutor.quit();
+        mPool.shutdown();
+    }
+
+    @Test
+    public void loopCountMustBePositive() {
+        try {
+            new ShardedTaskExecutor(0, mPool);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // There must be at least one main thread.
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void keyedPostsStayOnOneLoopInOrder() throws Exception {
+        final int keys = 32;
+        final int posts = 50;
+        final Map<Integer, List<Integer>> seen = new ConcurrentHashMap<>();
+        final Map<Integer, Set<Thread>> threads = new ConcurrentHashMap<>();
+        final CountDownLatch done = new CountDownLatch(keys * posts);
+        for (int i = 0; i < posts; i++) {
+            for (int key = 0; key < keys; key++) {
+                final int k = key;
+                final int value = i;
+                mExecutor.postToMainThread(key, () -> {
+                    seen.computeIfAbsent(k, x -> new CopyOnWriteArrayList<>()).add(value);
+                    threads.computeIfAbsent(k, x -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread());
+                    done.countDown();
+                });
+            }
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        final Set<Thread> used = new HashSet<>();
+        for (int key = 0; key < keys; key++) {
+            assertEquals(1, threads.get(key).size());
+            final Thread thread = threads.get(key).iterator().next();
+            assertSame(mExecutor.getLoopFor(key).getThread(), thread);
+            used.add(thread);
+            final List<Integer> values = seen.get(key);
+            for (int i = 0; i < posts; i++) {
+                assertEquals(Integer.valueOf(i), values.get(i));
+            }
+        }
+        // Keys spread over more than one loop.
+        assertTrue(used.size() > 1);
+    }
+
+    @Test(timeout = 10_000)
+    public void mainThreadChecksFollowTheKey() throws Exception {
+        final Object key = "key";
+        final EventLoop own = mExecutor.getLoopFor(key);
+        EventLoop other = null;
+        for (int i = 0; i < mExecutor.getLoopCount(); i++) {
+            if (mExecutor.getLoop(i) != own) {
+                other = mExecutor.getLoop(i);
+                break;
+            }
+        }
+        final AtomicBoolean[] checks = {
+                new AtomicBoolean(), new AtomicBoolean(), new AtomicBoolean(), new AtomicBoolean(true) };
+        final CountDownLatch done = new CountDownLatch(2);
+        own.post(() -> {
+            checks[0].set(mExecutor.isMainThread());
+            checks[1].set(mExecutor.isMainThread(key));
+            done.countDown();
+        });
+        other.post(() -> {
+            checks[2].set(mExecutor.isMainThread());
+            checks[3].set(mExecutor.isMainThread(key));
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(checks[0].get());
+        assertTrue(checks[1].get());
+        assertTrue(checks[2].get());
+        assertFalse(checks[3].get());
+        assertFalse(mExecutor.isMainThread());
+    }
+
+    @Test(timeout = 10_000)
+    public void unkeyedPostsGoToTheFirstLoop() throws Exception {
+        final Thread[] thread = new Thread[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        mExecutor.postToMainThread(() -> {
+            thread[0] = Thread.currentThread();
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertSame(mExecutor.getLoop(0).getThread(), thread[0]);
+    }
+
+    @Test(timeout = 10_000)
+    public void eachTaskDeliversOnItsOwnLoop() throws Exception {
+        ArchTaskExecutor.getInstance().setDelegate(mExecutor);
+        final TaskFactory factory = new TaskFactory(mPool);
+        final List<ITaskService<String, Void>> tasks = new ArrayList<>();
+        final Map<ITaskService<?, ?>, Thread> delivered = new ConcurrentHashMap<>();
+        final CountDownLatch finished = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            final ITaskService<?, ?>[] self = new ITaskService<?, ?>[1];
+            final ITaskService<String, Void> task = factory.createTask(new Job<String, Void>() {
+                @Override
+                public String doInBackground(Void param) {
+                    return "done";
+                }
+
+                @Override
+                public void onFinishing(String result) {
+                    delivered.put(self[0], Thread.currentThread());
+                    finished.countDown();
+                }
+
+                @Override
+                public void onBeginning() {
+                }
+            });
+            self[0] = task;
+            tasks.add(task);
+        }
+        for (ITaskService<String, Void> task : tasks) {
+            task.execute();
+        }
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        for (ITaskService<String, Void> task : tasks) {
+            assertSame(mExecutor.getLoopFor(task).getThread(), delivered.get(task));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.HedgePolicy;
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class HedgedTaskTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void hedgedTasksDoNotDeadlockSaturatedPool() throws Exception {
+        final HedgePolicy policy = HedgePolicy.newBuilder().delay(5, TimeUnit.MILLISECONDS).build();
+        final List<ITaskService<Integer, Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final int value = i;
+            tasks.add(mFactory.createHedgedTask(() -> {
+                Thread.sleep(20);
+                return value;
+            }, policy));
+        }
+        final List<CompletableFuture<Integer>> completions = new ArrayList<>();
+        for (ITaskService<Integer, Void> task : tasks) {
+            task.execute();
+            completions.add(task.getCompletion());
+        }
+        for (int i = 0; i < completions.size(); i++) {
+            assertEquals(Integer.valueOf(i), completions.get(i).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void firstResultWinsWithoutWaitingForPrimary() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final ITaskService<String, Void> task = mFactory.createHedgedTask(() -> {
+            if (calls.getAndIncrement() == 0) {
+                // Основная попытка не слышит ни токен, ни прерывание.
+                while (release.getCount() > 0) {
+                    Thread.onSpinWait();
+                }
+                return "primary";
+            }
+            return "hedge";
+        }, HedgePolicy.newBuilder().delay(20, TimeUnit.MILLISECONDS).build());
+        try {
+            task.execute();
+            assertEquals("hedge", task.getCompletion().get(5, TimeUnit.SECONDS));
+            assertEquals(2, calls.get());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void failsOnlyWhenAllAttemptsFail() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final ITaskService<String, Void> task = mFactory.createHedgedTask(() -> {
+            calls.incrementAndGet();
+            Thread.sleep(50);
+            throw new IOException("down");
+        }, HedgePolicy.newBuilder().delay(10, TimeUnit.MILLISECONDS).build());
+        task.setCrashHandler((thread, cause) -> { });
+        task.execute();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(2, calls.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void destroyCancelsRunningAttempts() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final ITaskService<String, Void> task = mFactory.createHedgedTask(() -> {
+            started.countDown();
+            Thread.sleep(10_000);
+            return "late";
+        }, HedgePolicy.newBuilder().delay(1, TimeUnit.SECONDS).build());
+        task.execute();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        task.destroy();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (java.util.concurrent.CancellationException expected) {
+            // Отмена дошла до попыток, и запуск завершился.
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.CancellationToken;
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskCancellationTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    private static void assertCancelled(CompletableFuture<?> completion) throws Exception {
+        try {
+            completion.get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // The run stopped at its next check.
+        }
+    }
+
+    /*
+     * Крутится, пока токен запуска не отменят, без прерываний потока.
+     */
+    private ITaskService<Integer, Void> cooperative(CountDownLatch started, AtomicBoolean stopped) {
+        return mFactory.createTask(() -> {
+            final CancellationToken token = CancellationToken.current();
+            started.countDown();
+            try {
+                while (true) {
+                    token.throwIfCancellationRequested();
+                    Thread.onSpinWait();
+                }
+            } finally {
+                stopped.set(true);
+            }
+        });
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelStopsACooperativeLoop() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final ITaskService<Integer, Void> task = cooperative(started, stopped);
+        task.setCrashHandler((thread, cause) -> { });
+        task.execute();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        task.cancel();
+        assertCancelled(task.getCompletion());
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!stopped.get() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(stopped.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void currentTokenIsTheRunToken() throws Exception {
+        final AtomicReference<CancellationToken> inside = new AtomicReference<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            inside.set(CancellationToken.current());
+            started.countDown();
+            release.await();
+            return 0;
+        });
+        task.execute();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertSame(task.getCancellationToken(), inside.get());
+        release.countDown();
+        task.getCompletion().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test(timeout = 10_000)
+    public void parentTokenCancelsTheRun() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final ITaskService<Integer, Void> task = cooperative(started, stopped);
+        task.setCrashHandler((thread, cause) -> { });
+        final CancellationToken parent = new CancellationToken();
+        task.setCancellationParent(parent);
+        task.execute();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        parent.cancel();
+        assertCancelled(task.getCompletion());
+    }
+
+    @Test(timeout = 10_000)
+    public void trackerCancelReachesEveryTrackedRun() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final AtomicBoolean firstStopped = new AtomicBoolean();
+        final AtomicBoolean secondStopped = new AtomicBoolean();
+        final ITaskService<Integer, Void> first = cooperative(started, firstStopped);
+        final ITaskService<Integer, Void> second = cooperative(started, secondStopped);
+        final TaskTracker tracker = new TaskTracker("cancel");
+        tracker.setCrashHandler((thread, cause) -> { });
+        tracker.track(first);
+        tracker.track(second);
+        tracker.startTracking();
+        first.execute();
+        second.execute();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        tracker.cancel();
+        assertCancelled(first.getCompletion());
+        assertCancelled(second.getCompletion());
+    }
+}
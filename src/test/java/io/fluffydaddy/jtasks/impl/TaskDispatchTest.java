@@ -0,0 +1,136 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.CompletionDispatch;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskDispatchTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+
+    private final AtomicReference<Thread> mWorker = new AtomicReference<>();
+    private final AtomicReference<Thread> mDelivered = new AtomicReference<>();
+    private final AtomicReference<String> mOutcome = new AtomicReference<>();
+    private final CountDownLatch mDone = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    /*
+     * Запоминает поток работы и поток, в который пришел результат или отмена.
+     */
+    private TaskService<Integer, Void> recording(CountDownLatch release) {
+        final TaskService<Integer, Void> task = new TaskService<Integer, Void>() {
+            @Override
+            public Integer doInBackground(Void param) throws Exception {
+                mWorker.set(Thread.currentThread());
+                release.await();
+                return 1;
+            }
+
+            @Override
+            public void onComplete(Integer result) {
+                mDelivered.set(Thread.currentThread());
+                mOutcome.set("complete");
+                mDone.countDown();
+            }
+
+            @Override
+            public void onCanceled(Integer result) {
+                mDelivered.set(Thread.currentThread());
+                mOutcome.set("canceled");
+                mDone.countDown();
+            }
+        };
+        task.setTaskPool(mPool);
+        return task;
+    }
+
+    @Test(timeout = 10_000)
+    public void inlineDeliversOnTheWorkerThread() throws Exception {
+        final TaskService<Integer, Void> task = recording(new CountDownLatch(0));
+        task.setMainExecutor(command -> {
+            throw new AssertionError("main executor must not be used");
+        });
+        task.setCompletionDispatch(CompletionDispatch.inline());
+        task.execute();
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals("complete", mOutcome.get());
+        assertSame(mWorker.get(), mDelivered.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void customExecutorReceivesTheDelivery() throws Exception {
+        final AtomicInteger hops = new AtomicInteger();
+        final ExecutorPool delivery = new ExecutorPool(1);
+        try {
+            final Executor executor = command -> {
+                hops.incrementAndGet();
+                delivery.execute(command);
+            };
+            final TaskService<Integer, Void> task = recording(new CountDownLatch(0));
+            task.setCompletionDispatch(CompletionDispatch.on(executor));
+            task.execute();
+            assertTrue(mDone.await(5, TimeUnit.SECONDS));
+            assertEquals(1, hops.get());
+            assertTrue(mDelivered.get() != mWorker.get());
+        } finally {
+            delivery.shutdown();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void mainDispatchGoesThroughTheMainExecutor() throws Exception {
+        final AtomicInteger hops = new AtomicInteger();
+        final TaskService<Integer, Void> task = recording(new CountDownLatch(0));
+        task.setMainExecutor(command -> {
+            hops.incrementAndGet();
+            command.run();
+        });
+        task.setCompletionDispatch(CompletionDispatch.main());
+        task.execute();
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, hops.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void cancellationIsDeliveredTheSameWay() throws Exception {
+        final AtomicInteger hops = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final TaskService<Integer, Void> task = recording(release);
+        task.setCompletionDispatch(CompletionDispatch.on(command -> {
+            hops.incrementAndGet();
+            command.run();
+        }));
+        task.execute();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mWorker.get() == null && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        task.cancel();
+        release.countDown();
+        assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        assertEquals("canceled", mOutcome.get());
+        assertEquals(1, hops.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void factoryDispatchAppliesToItsTasks() throws Exception {
+        final TaskFactory factory = new TaskFactory(mPool);
+        factory.setCompletionDispatch(CompletionDispatch.inline());
+        assertSame(CompletionDispatch.inline(), factory.createTask(() -> 0).getCompletionDispatch());
+    }
+}
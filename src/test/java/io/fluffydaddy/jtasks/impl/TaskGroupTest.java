@@ -0,0 +1,140 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskGroup;
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskGroupTest {
+    private final ExecutorPool mPool = new ExecutorPool(4);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Test(timeout = 20_000)
+    public void bulkTasksCompleteInOrderAndCountFailures() throws Exception {
+        final List<Callable<Integer>> jobs = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            final int value = i;
+            jobs.add(() -> {
+                if (value % 100 == 0) {
+                    throw new IOException("job " + value);
+                }
+                return value;
+            });
+        }
+        final List<ITaskService<Integer, Void>> tasks = mFactory.createTasks(jobs);
+        for (ITaskService<Integer, Void> task : tasks) {
+            task.setCrashHandler((thread, cause) -> { });
+        }
+        final TaskTracker tracker = new TaskTracker("bulk");
+        final ITaskGroup<Integer> group = tracker.trackAll(tasks);
+        tracker.startTracking();
+        group.execute();
+        final List<Integer> results = group.awaitTermination(10, TimeUnit.SECONDS);
+        assertTrue(group.getCompletion().isDone());
+        assertEquals(1_000, group.getCompletedCount());
+        assertEquals(10, group.getFailedCount());
+        for (int i = 0; i < results.size(); i++) {
+            if (i % 100 == 0) {
+                assertNull(results.get(i));
+            } else {
+                assertEquals(Integer.valueOf(i), results.get(i));
+            }
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void groupWaitsForTheRunItStartsNotAnEarlierOne() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            if (runs.incrementAndGet() > 1) {
+                release.await();
+            }
+            return runs.get();
+        });
+        task.execute();
+        assertEquals(Integer.valueOf(1), task.getCompletion().get(5, TimeUnit.SECONDS));
+
+        final TaskGroup<Integer> group = new TaskGroup<>(Collections.singletonList(task));
+        assertEquals(0, group.getCompletedCount());
+        group.execute();
+        group.awaitTermination(100, TimeUnit.MILLISECONDS);
+        assertEquals(0, group.getCompletedCount());
+        release.countDown();
+        assertEquals(Arrays.asList(2), group.awaitTermination());
+        assertEquals(1, group.getCompletedCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void trackedGroupCountsRunsStartedAfterTracking() throws Exception {
+        final ITaskService<String, Void> first = mFactory.createTask(() -> "first");
+        final ITaskService<String, Void> second = mFactory.createTask(() -> "second");
+        // Both already ran once; those results must not complete the group.
+        first.execute();
+        second.execute();
+        first.getCompletion().get(5, TimeUnit.SECONDS);
+        second.getCompletion().get(5, TimeUnit.SECONDS);
+
+        final TaskTracker tracker = new TaskTracker("group");
+        final ITaskGroup<String> group = tracker.trackAll(Arrays.asList(first, second));
+        tracker.startTracking();
+        Thread.sleep(50);
+        assertFalse(group.getCompletion().isDone());
+
+        // Started one by one, not through the group.
+        first.execute();
+        second.execute();
+        group.getCompletion().get(5, TimeUnit.SECONDS);
+        assertEquals(2, group.getCompletedCount());
+        assertEquals(Arrays.asList("first", "second"), group.awaitTermination());
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelledGroupCompletesWithEveryTaskFailed() throws Exception {
+        final CountDownLatch started = new CountDownLatch(3);
+        final List<ITaskService<Integer, Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(mFactory.createTask(() -> {
+                started.countDown();
+                Thread.sleep(10_000);
+                return 0;
+            }));
+        }
+        final TaskGroup<Integer> group = new TaskGroup<>(new ArrayList<>(tasks));
+        group.execute();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        group.cancel();
+        group.getCompletion().get(5, TimeUnit.SECONDS);
+        assertEquals(3, group.getFailedCount());
+        assertEquals(Arrays.asList(null, null, null), group.awaitTermination());
+    }
+
+    @Test
+    public void emptyGroupIsAlreadyComplete() {
+        final TaskGroup<Integer> group = new TaskGroup<>(Collections.emptyList());
+        assertTrue(group.getCompletion().isDone());
+        assertTrue(group.awaitTermination().isEmpty());
+    }
+}
@@ -0,0 +1,126 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.core.RetryPolicy;
+import io.fluffydaddy.jtasks.core.TrackState;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskRetryTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    private static RetryPolicy policy(int attempts, long delayMillis) {
+        return RetryPolicy.newBuilder()
+                .maxAttempts(attempts)
+                .backoff(delayMillis, delayMillis, TimeUnit.MILLISECONDS)
+                .jitter(0)
+                .build();
+    }
+
+    @Test(timeout = 10_000)
+    public void transientFailuresAreRetriedAfterTheBackoff() throws Exception {
+        final List<Long> starts = new CopyOnWriteArrayList<>();
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            starts.add(System.nanoTime());
+            if (starts.size() < 3) {
+                throw new IOException("flaky");
+            }
+            return starts.size();
+        });
+        task.setCrashHandler((thread, cause) -> { });
+        task.setRetryPolicy(policy(5, 30));
+        final TaskTracker tracker = new TaskTracker("retry");
+        tracker.track(task);
+        tracker.startTracking();
+        task.execute();
+        assertEquals(Integer.valueOf(3), task.getCompletion().get(5, TimeUnit.SECONDS));
+        for (int i = 1; i < starts.size(); i++) {
+            assertTrue(starts.get(i) - starts.get(i - 1) >= TimeUnit.MILLISECONDS.toNanos(30));
+        }
+        assertEquals(2, tracker.getRetryCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void lastFailureIsReportedOnceAttemptsRunOut() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            throw new IOException("down " + attempts.incrementAndGet());
+        });
+        task.setCrashHandler((thread, cause) -> { });
+        task.setRetryPolicy(policy(3, 5));
+        task.execute();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertEquals("down 3", e.getCause().getMessage());
+        }
+        assertEquals(3, attempts.get());
+        assertEquals(TrackState.EXCEPTED, task.getActiveState());
+    }
+
+    @Test(timeout = 10_000)
+    public void nonRetryableFailureIsNotRetried() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("bug");
+        });
+        task.setCrashHandler((thread, cause) -> { });
+        task.setRetryPolicy(policy(5, 5));
+        task.execute();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1, attempts.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelDuringBackoffStopsTheRetries() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            attempts.incrementAndGet();
+            throw new IOException("down");
+        });
+        task.setCrashHandler((thread, cause) -> { });
+        task.setRetryPolicy(policy(5, 200));
+        task.execute();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (task.getActiveState() != TrackState.RETRYING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(TrackState.RETRYING, task.getActiveState());
+        task.cancel();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // The pending retry was dropped.
+        }
+        Thread.sleep(300);
+        assertEquals(1, attempts.get());
+    }
+}
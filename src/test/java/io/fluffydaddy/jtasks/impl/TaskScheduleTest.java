@@ -0,0 +1,157 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskSchedule;
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskScheduleTest {
+    private final ExecutorPool mPool = new ExecutorPool(4);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+    private ITaskSchedule<?> mSchedule;
+
+    @After
+    public void tearDown() {
+        if (mSchedule != null) {
+            mSchedule.cancel();
+        }
+        mPool.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void oneShotRunsOnceAfterTheDelay() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch ran = new CountDownLatch(1);
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            ran.countDown();
+            return runs.incrementAndGet();
+        });
+        final long start = System.nanoTime();
+        mSchedule = task.schedule(40, TimeUnit.MILLISECONDS);
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+        Thread.sleep(100);
+        assertEquals(1, runs.get());
+        assertEquals(1, mSchedule.getRunCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelledScheduleNeverRuns() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final ITaskService<Integer, Void> task = mFactory.createTask(runs::incrementAndGet);
+        mSchedule = task.scheduleAtFixedRate(30, 10, TimeUnit.MILLISECONDS);
+        assertTrue(mSchedule.cancel());
+        assertFalse(mSchedule.cancel());
+        assertTrue(mSchedule.isCancelled());
+        Thread.sleep(100);
+        assertEquals(0, runs.get());
+        assertEquals(0, mSchedule.getRunCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void fixedRateRepeatsUntilCancelled() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch five = new CountDownLatch(5);
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            five.countDown();
+            return runs.incrementAndGet();
+        });
+        mSchedule = task.scheduleAtFixedRate(0, 10, TimeUnit.MILLISECONDS);
+        assertTrue(five.await(5, TimeUnit.SECONDS));
+        mSchedule.cancel();
+        // A run already handed to the pool may still finish.
+        Thread.sleep(30);
+        final int afterCancel = runs.get();
+        Thread.sleep(100);
+        assertEquals(afterCancel, runs.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void fixedRateSkipsInsteadOfOverlappingASlowRun() throws Exception {
+        final AtomicInteger inside = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final CountDownLatch three = new CountDownLatch(3);
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            if (inside.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            Thread.sleep(50);
+            inside.decrementAndGet();
+            three.countDown();
+            return 0;
+        });
+        mSchedule = task.scheduleAtFixedRate(0, 10, TimeUnit.MILLISECONDS);
+        assertTrue(three.await(5, TimeUnit.SECONDS));
+        mSchedule.cancel();
+        assertEquals(0, overlaps.get());
+        assertTrue(mSchedule.getSkipCount() > 0);
+        assertTrue(mSchedule.getOverrunCount() > 0);
+    }
+
+    @Test(timeout = 10_000)
+    public void fixedDelayWaitsForTheRunToFinish() throws Exception {
+        final List<Long> starts = new CopyOnWriteArrayList<>();
+        final CountDownLatch three = new CountDownLatch(3);
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            starts.add(System.nanoTime());
+            Thread.sleep(30);
+            three.countDown();
+            return 0;
+        });
+        mSchedule = task.scheduleWithFixedDelay(0, 20, TimeUnit.MILLISECONDS);
+        assertTrue(three.await(5, TimeUnit.SECONDS));
+        mSchedule.cancel();
+        for (int i = 1; i < 3; i++) {
+            final long gap = starts.get(i) - starts.get(i - 1);
+            assertTrue("gap " + gap, gap >= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        assertEquals(0, mSchedule.getSkipCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void failedRunDoesNotStopTheSchedule() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch three = new CountDownLatch(3);
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            three.countDown();
+            if (runs.incrementAndGet() == 1) {
+                throw new IOException("down");
+            }
+            return runs.get();
+        });
+        task.setCrashHandler((thread, cause) -> { });
+        mSchedule = task.scheduleWithFixedDelay(0, 10, TimeUnit.MILLISECONDS);
+        assertTrue(three.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void invalidTimingIsRejected() {
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> 0);
+        try {
+            task.schedule(-1, TimeUnit.MILLISECONDS);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // A delay cannot point into the past.
+        }
+        try {
+            task.scheduleAtFixedRate(0, 0, TimeUnit.MILLISECONDS);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // A repeating schedule needs a period.
+        }
+    }
+}
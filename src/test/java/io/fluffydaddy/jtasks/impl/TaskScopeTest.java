@@ -0,0 +1,135 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskScope;
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskScopeTest {
+    private final ExecutorPool mPool = new ExecutorPool(4);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void joinWaitsForEveryTaskAndKeepsForkOrder() throws Exception {
+        final TaskScope<Integer> scope = new TaskScope<>(ITaskScope.Policy.ALL, mFactory);
+        for (int i = 0; i < 5; i++) {
+            final int value = i;
+            scope.fork(() -> {
+                Thread.sleep(10 * (5 - value));
+                return value;
+            });
+        }
+        scope.join();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), scope.results());
+        scope.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void reusedTaskIsAwaitedForItsNewRun() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            if (runs.incrementAndGet() > 1) {
+                release.await();
+            }
+            return runs.get();
+        });
+        task.execute();
+        assertEquals(Integer.valueOf(1), task.getCompletion().get(5, TimeUnit.SECONDS));
+
+        final TaskScope<Integer> scope = new TaskScope<>(ITaskScope.Policy.ALL, mFactory);
+        scope.fork(task);
+        // The previous run is already complete; the scope must wait for this one.
+        assertFalse(scope.join(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(scope.join(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(2), scope.results());
+        scope.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void taskThatNeverStartsDoesNotHoldJoin() throws Exception {
+        final TaskScope<Integer> scope = new TaskScope<>(ITaskScope.Policy.ALL, mFactory);
+        scope.shutdown();
+        final AtomicInteger ran = new AtomicInteger();
+        scope.fork(ran::incrementAndGet);
+        assertTrue(scope.join(5, TimeUnit.SECONDS));
+        assertEquals(0, ran.get());
+        scope.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void failFastCancelsSiblings() throws Exception {
+        final TaskScope<String> scope = new TaskScope<>(ITaskScope.Policy.FAIL_FAST, mFactory);
+        final ITaskService<String, Void> slow = scope.fork(() -> {
+            Thread.sleep(10_000);
+            return "slow";
+        });
+        final ITaskService<String, Void> failing = mFactory.createTask(() -> {
+            throw new IOException("down");
+        });
+        failing.setCrashHandler((thread, cause) -> { });
+        scope.fork(failing);
+        assertTrue(scope.join(5, TimeUnit.SECONDS));
+        assertTrue(scope.isShutdown());
+        assertTrue(scope.getFailure() instanceof IOException);
+        try {
+            scope.throwIfFailed();
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            slow.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // The sibling was cancelled through the scope token.
+        }
+        scope.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void firstSuccessReturnsTheFastestResult() throws Exception {
+        final TaskScope<String> scope = new TaskScope<>(ITaskScope.Policy.FIRST_SUCCESS, mFactory);
+        scope.fork(() -> {
+            Thread.sleep(10_000);
+            return "slow";
+        });
+        scope.fork(() -> "fast");
+        assertTrue(scope.join(5, TimeUnit.SECONDS));
+        assertEquals("fast", scope.result());
+        scope.close();
+    }
+
+    @Test
+    public void closedScopeRefusesForks() throws Exception {
+        final TaskScope<Integer> scope = new TaskScope<>(ITaskScope.Policy.ALL, mFactory);
+        scope.close();
+        try {
+            scope.fork(() -> 1);
+            fail("expected the scope to be closed");
+        } catch (IllegalStateException expected) {
+            // Nothing may be forked after close().
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskServiceCompletionTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void futureRequestedBeforeExecuteBelongsToTheNextRun() throws Exception {
+        final ITaskService<String, Void> task = mFactory.createTask(() -> "done");
+        final CompletableFuture<String> completion = task.getCompletion();
+        assertFalse(completion.isDone());
+        assertSame(completion, task.getCompletion());
+        task.execute();
+        assertEquals("done", completion.get(5, TimeUnit.SECONDS));
+        assertSame(completion, task.getCompletion());
+    }
+
+    @Test(timeout = 10_000)
+    public void failureCompletesTheFutureExceptionally() throws Exception {
+        final ITaskService<String, Void> task = mFactory.createTask(() -> {
+            throw new IOException("down");
+        });
+        task.setCrashHandler((thread, cause) -> { });
+        task.execute();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelledRunCancelsTheFuture() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final ITaskService<String, Void> task = mFactory.createTask(() -> {
+            started.countDown();
+            Thread.sleep(10_000);
+            return "late";
+        });
+        task.execute();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        task.cancel();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // The future follows the run.
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void runsComposeWithoutBlocking() throws Exception {
+        final ITaskService<Integer, Void> left = mFactory.createTask(() -> 20);
+        final ITaskService<Integer, Void> right = mFactory.createTask(() -> 22);
+        final CompletableFuture<String> sum = left.getCompletion()
+                .thenCombine(right.getCompletion(), Integer::sum)
+                .thenApply(String::valueOf);
+        left.execute();
+        right.execute();
+        assertEquals("42", sum.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void everyRunGetsItsOwnFuture() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final ITaskService<Integer, Void> task = mFactory.createTask(runs::incrementAndGet);
+        task.execute();
+        final CompletableFuture<Integer> first = task.getCompletion();
+        assertEquals(Integer.valueOf(1), first.get(5, TimeUnit.SECONDS));
+        task.execute();
+        final CompletableFuture<Integer> second = task.getCompletion();
+        assertEquals(Integer.valueOf(2), second.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), first.join());
+    }
+}
@@ -0,0 +1,100 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskServiceForkTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    /*
+     * Сумма на отрезке, делящаяся пополам подзадачами до мелких кусков.
+     */
+    private static long sum(ITaskService<?, ?> task, long from, long to) throws Exception {
+        if (to - from <= 1_000) {
+            long sum = 0;
+            for (long i = from; i < to; i++) {
+                sum += i;
+            }
+            return sum;
+        }
+        final long middle = (from + to) >>> 1;
+        final ForkJoinTask<Long> left = task.fork(() -> sum(task, from, middle));
+        final long right = sum(task, middle, to);
+        return left.join() + right;
+    }
+
+    @Test(timeout = 10_000)
+    public void subtasksSplitWorkAcrossTheWorkStealingPool() throws Exception {
+        final AtomicReference<ITaskService<Long, Void>> self = new AtomicReference<>();
+        self.set(mFactory.createTask(() -> sum(self.get(), 0, 1_000_000)));
+        self.get().execute();
+        assertEquals(Long.valueOf(499_999_500_000L), self.get().getCompletion().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void subtasksRunOnForkJoinWorkers() throws Exception {
+        final AtomicReference<ITaskService<Boolean, Void>> self = new AtomicReference<>();
+        self.set(mFactory.createTask(() -> self.get()
+                .fork(() -> Thread.currentThread() instanceof ForkJoinWorkerThread)
+                .join()));
+        self.get().execute();
+        assertTrue(self.get().getCompletion().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void cancellingTheTaskCancelsItsSubtasks() throws Exception {
+        final CountDownLatch forked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<ForkJoinTask<Integer>> subtasks = new ArrayList<>();
+        final AtomicReference<ITaskService<Integer, Void>> self = new AtomicReference<>();
+        self.set(mFactory.createTask(() -> {
+            for (int i = 0; i < 4; i++) {
+                subtasks.add(self.get().fork(() -> {
+                    release.await();
+                    return 1;
+                }));
+            }
+            forked.countDown();
+            release.await();
+            return 0;
+        }));
+        final ITaskService<Integer, Void> task = self.get();
+        task.execute();
+        assertTrue(forked.await(5, TimeUnit.SECONDS));
+        task.cancel();
+        for (ForkJoinTask<Integer> subtask : subtasks) {
+            assertTrue(subtask.isCancelled() || subtask.isDone());
+        }
+        // A cancelled task does not hand out new subtasks.
+        assertTrue(task.fork(() -> 1).isCancelled());
+        release.countDown();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // The run itself was cancelled too.
+        }
+    }
+}
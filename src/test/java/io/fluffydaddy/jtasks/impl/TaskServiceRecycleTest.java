@@ -0,0 +1,173 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.CancellationToken;
+import io.fluffydaddy.jtasks.core.CompletionDispatch;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskServiceRecycleTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    private interface Body {
+        Integer run() throws Exception;
+    }
+
+    /*
+     * Результат отдается прямо в рабочем потоке, иначе без главного цикла запуск
+     * Никогда не станет пригодным для повторного использования.
+     */
+    private TaskService<Integer, Void> recyclable(Body body) {
+        final TaskService<Integer, Void> task = new TaskService<Integer, Void>() {
+            @Override
+            public Integer doInBackground(Void param) throws Exception {
+                return body.run();
+            }
+        };
+        task.setTaskPool(mPool);
+        task.setCompletionDispatch(CompletionDispatch.inline());
+        task.setRecyclable(true);
+        return task;
+    }
+
+    private static void awaitRecyclable(TaskService<?, ?> task) throws Exception {
+        // onComplete идет сразу после завершения future, даем ему отработать.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (task.isAlive() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(5);
+    }
+
+    @Test(timeout = 10_000)
+    public void everyRunReportsItsOwnResult() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final TaskService<Integer, Void> task = recyclable(runs::incrementAndGet);
+        for (int i = 1; i <= 50; i++) {
+            task.execute();
+            assertEquals(Integer.valueOf(i), task.getCompletion().get(5, TimeUnit.SECONDS));
+            awaitRecyclable(task);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void unexposedTokenIsReused() throws Exception {
+        final AtomicReference<CancellationToken> seen = new AtomicReference<>();
+        final TaskService<Integer, Void> task = recyclable(() -> {
+            seen.set(CancellationToken.current());
+            return 0;
+        });
+        task.execute();
+        task.getCompletion().get(5, TimeUnit.SECONDS);
+        awaitRecyclable(task);
+        final CancellationToken first = seen.get();
+        task.execute();
+        task.getCompletion().get(5, TimeUnit.SECONDS);
+        assertSame(first, seen.get());
+        assertFalse(first.isCancellationRequested());
+    }
+
+    @Test(timeout = 10_000)
+    public void exposedTokenIsNotRevivedForTheNextRun() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final TaskService<Integer, Void> task = recyclable(() -> {
+            if (runs.incrementAndGet() > 1) {
+                started.countDown();
+                release.await();
+            }
+            return runs.get();
+        });
+        task.execute();
+        task.getCompletion().get(5, TimeUnit.SECONDS);
+        final CancellationToken held = task.getCancellationToken();
+        awaitRecyclable(task);
+
+        task.execute();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertNotSame(held, task.getCancellationToken());
+        // A caller still holding the old token must not cancel the new run.
+        held.cancel();
+        release.countDown();
+        assertEquals(Integer.valueOf(2), task.getCompletion().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void recycledTokenFollowsANewParent() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        final TaskService<Integer, Void> task = recyclable(() -> {
+            if (runs.incrementAndGet() > 1) {
+                started.countDown();
+                Thread.sleep(10_000);
+            }
+            return runs.get();
+        });
+        final CancellationToken oldParent = new CancellationToken();
+        task.setCancellationParent(oldParent);
+        task.execute();
+        task.getCompletion().get(5, TimeUnit.SECONDS);
+        awaitRecyclable(task);
+
+        final CancellationToken newParent = new CancellationToken();
+        task.setCancellationParent(newParent);
+        task.execute();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // The previous parent no longer reaches the run.
+        oldParent.cancel();
+        Thread.sleep(20);
+        assertFalse(task.getCompletion().isDone());
+        newParent.cancel();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // The current parent cancels the run.
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void timeoutDestroysOnlyTheRunThatOverran() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final TaskService<Integer, Void> task = recyclable(() -> {
+            if (runs.incrementAndGet() == 1) {
+                Thread.sleep(10_000);
+            }
+            return runs.get();
+        });
+        task.setTimeout(50, TimeUnit.MILLISECONDS);
+        task.execute();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected the first run to time out");
+        } catch (CancellationException expected) {
+            // The first run overran its timeout.
+        }
+        awaitRecyclable(task);
+        for (int i = 2; i <= 5; i++) {
+            task.execute();
+            assertEquals(Integer.valueOf(i), task.getCompletion().get(5, TimeUnit.SECONDS));
+            awaitRecyclable(task);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.core.TrackState;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskServiceStateTest {
+    private final ExecutorPool mPool = new ExecutorPool(4);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void stateIsFinishedAsSoonAsTheResultIsVisible() throws Exception {
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> 42);
+        assertNull(task.getActiveState());
+        task.execute();
+        assertEquals(Integer.valueOf(42), task.getCompletion().get(5, TimeUnit.SECONDS));
+        // Read from a thread other than the worker, without waiting for the main thread.
+        assertEquals(TrackState.FINISHED, task.getActiveState());
+        assertTrue(task.isComplete());
+    }
+
+    @Test
+    public void finalStateRefusesFurtherTransitions() {
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> 0);
+        assertTrue(task.setState(TrackState.TRACKING));
+        assertTrue(task.setState(TrackState.FINISHED));
+        assertFalse(task.setState(TrackState.CANCELED));
+        assertFalse(task.setState(TrackState.EXCEPTED));
+        assertEquals(TrackState.FINISHED, task.getActiveState());
+    }
+
+    @Test(timeout = 10_000)
+    public void concurrentOutcomesSettleOnExactlyOne() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            final ITaskService<Integer, Void> task = mFactory.createTask(() -> 0);
+            task.setState(TrackState.TRACKING);
+            final TrackState[] outcomes = {TrackState.FINISHED, TrackState.EXCEPTED, TrackState.CANCELED};
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Thread> threads = new ArrayList<>();
+            final boolean[] moved = new boolean[outcomes.length];
+            for (int i = 0; i < outcomes.length; i++) {
+                final int index = i;
+                final Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    moved[index] = task.setState(outcomes[index]);
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            int winners = 0;
+            for (int i = 0; i < outcomes.length; i++) {
+                if (moved[i]) {
+                    winners++;
+                    assertEquals(outcomes[i], task.getActiveState());
+                }
+            }
+            assertEquals(1, winners);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void recoveredSubtaskFailureDoesNotFailTheParent() throws Exception {
+        final AtomicReference<ITaskService<String, Void>> self = new AtomicReference<>();
+        self.set(mFactory.createTask(() -> {
+            final ForkJoinTask<String> subtask = self.get().fork(() -> {
+                throw new IOException("subtask");
+            });
+            try {
+                return subtask.join();
+            } catch (CompletionException e) {
+                return "recovered";
+            }
+        }));
+        final ITaskService<String, Void> task = self.get();
+        final TaskTracker tracker = new TaskTracker("subtasks");
+        tracker.track(task);
+        tracker.startTracking();
+        task.execute();
+        assertEquals("recovered", task.getCompletion().get(5, TimeUnit.SECONDS));
+        assertEquals(TrackState.FINISHED, task.getActiveState());
+        assertTrue(task.isComplete());
+        assertEquals(1, tracker.getSubtaskFailureCount());
+    }
+}
@@ -0,0 +1,182 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+import io.fluffydaddy.jtasks.factory.Job;
+
+public class TaskShareTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    private void awaitReleased() throws InterruptedException {
+        // The key is given back right after the completion, let that run.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mFactory.getSharedCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, mFactory.getSharedCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void concurrentCallersShareOneRun() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<ITaskService<Integer, Void>> seen = new CopyOnWriteArrayList<>();
+        final CountDownLatch go = new CountDownLatch(1);
+        final Thread[] callers = new Thread[8];
+        for (int i = 0; i < callers.length; i++) {
+            callers[i] = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException ignored) {
+                    return;
+                }
+                seen.add(mFactory.shareTask("user:42", () -> {
+                    release.await();
+                    return runs.incrementAndGet();
+                }));
+            });
+            callers[i].start();
+        }
+        go.countDown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        release.countDown();
+        for (ITaskService<Integer, Void> task : seen) {
+            assertSame(seen.get(0), task);
+            assertEquals(Integer.valueOf(1), task.getCompletion().get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, runs.get());
+        awaitReleased();
+    }
+
+    @Test(timeout = 10_000)
+    public void differentKeysRunSeparately() throws Exception {
+        final ITaskService<String, Void> first = mFactory.shareTask("a", () -> "a");
+        final ITaskService<String, Void> second = mFactory.shareTask("b", () -> "b");
+        assertNotSame(first, second);
+        assertEquals("a", first.getCompletion().get(5, TimeUnit.SECONDS));
+        assertEquals("b", second.getCompletion().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void finishedKeyRunsAgainWithoutTtl() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final ITaskService<Integer, Void> first = mFactory.shareTask("key", runs::incrementAndGet);
+        assertEquals(Integer.valueOf(1), first.getCompletion().get(5, TimeUnit.SECONDS));
+        awaitReleased();
+        final ITaskService<Integer, Void> second = mFactory.shareTask("key", runs::incrementAndGet);
+        assertEquals(Integer.valueOf(2), second.getCompletion().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void successIsReusedUntilTheTtlPasses() throws Exception {
+        mFactory.setShareTtl(100, TimeUnit.MILLISECONDS);
+        final AtomicInteger runs = new AtomicInteger();
+        final ITaskService<Integer, Void> first = mFactory.shareTask("key", runs::incrementAndGet);
+        assertEquals(Integer.valueOf(1), first.getCompletion().get(5, TimeUnit.SECONDS));
+        final ITaskService<Integer, Void> cached = mFactory.shareTask("key", runs::incrementAndGet);
+        assertSame(first, cached);
+        assertEquals(1, mFactory.getSharedCount());
+        awaitReleased();
+        final ITaskService<Integer, Void> fresh = mFactory.shareTask("key", runs::incrementAndGet);
+        assertEquals(Integer.valueOf(2), fresh.getCompletion().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void failureReleasesTheKeyAtOnceEvenWithTtl() throws Exception {
+        mFactory.setShareTtl(10, TimeUnit.SECONDS);
+        final AtomicInteger runs = new AtomicInteger();
+        final ITaskService<Integer, Void> failed = mFactory.shareTask("key", () -> {
+            runs.incrementAndGet();
+            throw new IOException("down");
+        });
+        failed.setCrashHandler((thread, cause) -> { });
+        try {
+            failed.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException expected) {
+            // Every caller sees the same error.
+        }
+        awaitReleased();
+        final ITaskService<Integer, Void> retried = mFactory.shareTask("key", runs::incrementAndGet);
+        assertEquals(Integer.valueOf(2), retried.getCompletion().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelCancelsForEveryCallerAndReleasesTheKey() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final ITaskService<Integer, Void> first = mFactory.shareTask("key", () -> {
+            started.countDown();
+            Thread.sleep(10_000);
+            return 0;
+        });
+        first.setCrashHandler((thread, cause) -> { });
+        final ITaskService<Integer, Void> second = mFactory.shareTask("key", () -> 1);
+        assertSame(first, second);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        second.cancel();
+        try {
+            first.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // The shared run is gone for everyone.
+        }
+        awaitReleased();
+    }
+
+    @Test(timeout = 10_000)
+    public void jobAndParamTogetherFormTheKey() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Job<Integer, Integer> job = new Job<Integer, Integer>() {
+            @Override
+            public Integer doInBackground(Integer param) throws Exception {
+                runs.incrementAndGet();
+                release.await();
+                return param * 10;
+            }
+
+            @Override
+            public void onFinishing(Integer result) {
+            }
+
+            @Override
+            public void onBeginning() {
+            }
+        };
+        final ITaskService<Integer, Integer> one = mFactory.shareTask(job, 1);
+        final ITaskService<Integer, Integer> sameOne = mFactory.shareTask(job, 1);
+        final ITaskService<Integer, Integer> two = mFactory.shareTask(job, 2);
+        assertSame(one, sameOne);
+        assertNotSame(one, two);
+        release.countDown();
+        assertEquals(Integer.valueOf(10), one.getCompletion().get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(20), two.getCompletion().get(5, TimeUnit.SECONDS));
+        assertEquals(2, runs.get());
+    }
+}
@@ -0,0 +1,183 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.CancellationToken;
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.core.ITaskStage;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskStageTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void stepsRunInOrderOnTheResult() throws Exception {
+        final List<String> order = new CopyOnWriteArrayList<>();
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> 41);
+        final ITaskStage<String> stage = task
+                .then(value -> {
+                    order.add("inc");
+                    return value + 1;
+                })
+                .thenAsync(value -> {
+                    order.add("async");
+                    return value * 10;
+                })
+                .then(value -> {
+                    order.add("format");
+                    return "=" + value;
+                });
+        task.execute();
+        assertEquals("=420", stage.getCompletion().get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("inc", "async", "format"), order);
+    }
+
+    @Test(timeout = 10_000)
+    public void thenAsyncUsesTheGivenExecutor() throws Exception {
+        final AtomicInteger hops = new AtomicInteger();
+        final Executor executor = command -> {
+            hops.incrementAndGet();
+            mPool.execute(command);
+        };
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> 1);
+        final ITaskStage<Integer> stage = task.thenAsync(value -> value + 1, executor);
+        task.execute();
+        assertEquals(Integer.valueOf(2), stage.getCompletion().get(5, TimeUnit.SECONDS));
+        assertEquals(1, hops.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void checkedFailureSkipsStepsUntilHandle() throws Exception {
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicReference<Throwable> seen = new AtomicReference<>();
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> 1);
+        final ITaskStage<String> stage = task
+                .<Integer>then(value -> {
+                    throw new IOException("step");
+                })
+                .then(value -> skipped.incrementAndGet())
+                .handle((value, cause) -> {
+                    seen.set(cause);
+                    return "recovered";
+                });
+        task.execute();
+        assertEquals("recovered", stage.getCompletion().get(5, TimeUnit.SECONDS));
+        assertEquals(0, skipped.get());
+        // The handler sees the step's own exception, not a wrapper.
+        assertTrue(seen.get() instanceof IOException);
+    }
+
+    @Test(timeout = 10_000)
+    public void taskFailureReachesTheChain() throws Exception {
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            throw new IOException("task");
+        });
+        task.setCrashHandler((thread, cause) -> { });
+        final ITaskStage<Integer> stage = task.then(value -> value + 1);
+        task.execute();
+        try {
+            stage.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertEquals("task", e.getCause().getMessage());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void stepsShareTheChainToken() throws Exception {
+        final AtomicReference<CancellationToken> first = new AtomicReference<>();
+        final AtomicReference<CancellationToken> second = new AtomicReference<>();
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> 1);
+        final ITaskStage<Integer> stage = task
+                .then(value -> {
+                    first.set(CancellationToken.current());
+                    return value;
+                })
+                .thenAsync(value -> {
+                    second.set(CancellationToken.current());
+                    return value;
+                });
+        task.execute();
+        stage.getCompletion().get(5, TimeUnit.SECONDS);
+        assertSame(stage.getCancellationToken(), first.get());
+        assertSame(stage.getCancellationToken(), second.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelStopsTheTaskAndThePendingSteps() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger steps = new AtomicInteger();
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> {
+            started.countDown();
+            Thread.sleep(10_000);
+            return 1;
+        });
+        task.setCrashHandler((thread, cause) -> { });
+        final ITaskStage<Integer> stage = task.then(value -> steps.incrementAndGet());
+        task.execute();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        stage.cancel();
+        assertTrue(stage.getCancellationToken().isCancellationRequested());
+        try {
+            stage.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // The step never ran.
+        }
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // The task was cancelled with the chain.
+        }
+        assertEquals(0, steps.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void stepAfterCancelledTokenDoesNotRun() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger steps = new AtomicInteger();
+        final ITaskService<Integer, Void> task = mFactory.createTask(() -> 1);
+        final AtomicReference<ITaskStage<Integer>> head = new AtomicReference<>();
+        head.set(task.then(value -> {
+            // The chain is cancelled from inside its own step.
+            head.get().getCancellationToken().cancel();
+            release.countDown();
+            return value;
+        }));
+        final ITaskStage<Integer> tail = head.get().then(value -> steps.incrementAndGet());
+        task.execute();
+        assertTrue(release.await(5, TimeUnit.SECONDS));
+        try {
+            tail.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+        assertEquals(0, steps.get());
+    }
+}
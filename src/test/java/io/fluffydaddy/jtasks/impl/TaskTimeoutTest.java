@@ -0,0 +1,91 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.core.TrackState;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+
+public class TaskTimeoutTest {
+    private final ExecutorPool mPool = new ExecutorPool(2);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void overrunningRunIsInterruptedAndTerminated() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final ITaskService<String, Void> task = mFactory.createTask(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "late";
+        });
+        task.setCrashHandler((thread, cause) -> { });
+        task.setTimeout(50, TimeUnit.MILLISECONDS);
+        task.execute();
+        try {
+            task.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected the run to time out");
+        } catch (CancellationException expected) {
+            // The timer destroyed the run.
+        }
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(TrackState.TERMINATED, task.getActiveState());
+    }
+
+    @Test(timeout = 10_000)
+    public void runFinishingInTimeKeepsItsResult() throws Exception {
+        final ITaskService<String, Void> task = mFactory.createTask(() -> "fast");
+        task.setTimeout(50, TimeUnit.MILLISECONDS);
+        task.execute();
+        assertEquals("fast", task.getCompletion().get(5, TimeUnit.SECONDS));
+        // The cancelled timeout must not reach the finished run later.
+        Thread.sleep(100);
+        assertFalse(task.getCompletion().isCancelled());
+        assertEquals(TrackState.FINISHED, task.getActiveState());
+    }
+
+    @Test(timeout = 10_000)
+    public void trackerTimeoutDestroysUnfinishedTasks() throws Exception {
+        final ITaskService<String, Void> fast = mFactory.createTask(() -> "fast");
+        final ITaskService<String, Void> slow = mFactory.createTask(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException ignored) {
+                // The tracker destroyed the run.
+            }
+            return "late";
+        });
+        final TaskTracker tracker = new TaskTracker("timeout");
+        tracker.setTimeout(50, TimeUnit.MILLISECONDS);
+        tracker.track(fast);
+        tracker.track(slow);
+        tracker.startTracking();
+        fast.execute();
+        slow.execute();
+        assertEquals("fast", fast.getCompletion().get(5, TimeUnit.SECONDS));
+        try {
+            slow.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected the tracker to destroy the slow task");
+        } catch (CancellationException expected) {
+            // The tracker's deadline passed.
+        }
+        assertFalse(fast.getCompletion().isCancelled());
+    }
+}
@@ -0,0 +1,192 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+import io.fluffydaddy.jtasks.factory.Job;
+
+public class TaskTrackerTest {
+    private final ExecutorPool mPool = new ExecutorPool(4);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    @After
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    private interface Body<R, P> {
+        R run(P param) throws Exception;
+    }
+
+    private <R, P> ITaskService<R, P> task(String name, Body<R, P> body) {
+        final ITaskService<R, P> task = mFactory.createTask(new Job<R, P>() {
+            @Override
+            public R doInBackground(P param) throws Exception {
+                return body.run(param);
+            }
+
+            @Override
+            public void onFinishing(R result) {
+            }
+
+            @Override
+            public void onBeginning() {
+            }
+        });
+        task.setName(name);
+        return task;
+    }
+
+    private static void assertCancelled(CompletableFuture<?> completion) throws Exception {
+        try {
+            completion.get(5, TimeUnit.SECONDS);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // The run was cancelled instead of hanging.
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void graphPassesResultsDownstreamAndRunsEachTaskOnce() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final ITaskService<Integer, Void> source = task("source", param -> {
+            runs.incrementAndGet();
+            return 2;
+        });
+        final ITaskService<Integer, Integer> doubled = task("doubled", param -> {
+            runs.incrementAndGet();
+            return param * 2;
+        });
+        final ITaskService<Integer, Integer> squared = task("squared", param -> {
+            runs.incrementAndGet();
+            return param * param;
+        });
+        final ITaskService<String, List<Integer>> joined = task("joined", param -> {
+            runs.incrementAndGet();
+            return param.toString();
+        });
+        final TaskTracker tracker = new TaskTracker("graph");
+        tracker.track(joined, doubled, squared);
+        tracker.track(doubled, source);
+        tracker.track(squared, source);
+        tracker.track(source);
+        tracker.startTracking();
+
+        final Map<ITaskService, ?> results = tracker.awaitTermination();
+        assertEquals("[4, 4]", joined.getCompletion().get(5, TimeUnit.SECONDS));
+        assertEquals("[4, 4]", results.get(joined));
+        assertEquals(4, runs.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void independentBranchesRunInParallel() throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final ITaskService<Integer, Void> source = task("source", param -> 1);
+        // Each branch waits for the other; sequential execution would time out.
+        final ITaskService<Integer, Integer> left = task("left", param -> barrier.await(5, TimeUnit.SECONDS));
+        final ITaskService<Integer, Integer> right = task("right", param -> barrier.await(5, TimeUnit.SECONDS));
+        final TaskTracker tracker = new TaskTracker("parallel");
+        tracker.track(left, source);
+        tracker.track(right, source);
+        tracker.track(source);
+        tracker.startTracking();
+        left.getCompletion().get(5, TimeUnit.SECONDS);
+        right.getCompletion().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test(timeout = 10_000)
+    public void failedUpstreamCancelsEveryDownstreamCompletion() throws Exception {
+        final AtomicInteger downstreamRuns = new AtomicInteger();
+        final ITaskService<Integer, Void> source = task("source", param -> {
+            throw new IOException("down");
+        });
+        source.setCrashHandler((thread, cause) -> { });
+        final ITaskService<Integer, Integer> middle = task("middle", param -> downstreamRuns.incrementAndGet());
+        final ITaskService<Integer, Integer> sink = task("sink", param -> downstreamRuns.incrementAndGet());
+        final TaskTracker tracker = new TaskTracker("failure");
+        tracker.setCrashHandler((thread, cause) -> { });
+        tracker.track(sink, middle);
+        tracker.track(middle, source);
+        tracker.track(source);
+        tracker.startTracking();
+
+        try {
+            source.getCompletion().get(5, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertCancelled(middle.getCompletion());
+        assertCancelled(sink.getCompletion());
+        assertEquals(0, downstreamRuns.get());
+    }
+
+    @Test
+    public void cycleIsRejectedBeforeAnythingIsSubmitted() {
+        final ITaskService<Integer, Integer> first = task("first", param -> 1);
+        final ITaskService<Integer, Integer> second = task("second", param -> 2);
+        final ITaskService<Integer, Void> bystander = task("bystander", param -> 3);
+        final TaskTracker tracker = new TaskTracker("cycle");
+        tracker.setTimeout(1, TimeUnit.MILLISECONDS);
+        tracker.track(bystander);
+        tracker.track(first, second);
+        tracker.track(second, first);
+        try {
+            tracker.startTracking();
+            fail("expected a cycle");
+        } catch (IllegalStateException expected) {
+            // Nothing was started.
+        }
+        assertFalse(tracker.isTracking());
+        assertEquals(3, tracker.getQueue().size());
+        assertTrue(tracker.getTasks().isEmpty());
+        assertNull(bystander.getActiveState());
+    }
+
+    @Test(timeout = 10_000)
+    public void reusedUpstreamFeedsItsNewResult() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final ITaskService<Integer, Void> source = task("source", param -> runs.incrementAndGet());
+        source.execute();
+        assertEquals(Integer.valueOf(1), source.getCompletion().get(5, TimeUnit.SECONDS));
+
+        final ITaskService<Integer, Integer> sink = task("sink", param -> param * 10);
+        final TaskTracker tracker = new TaskTracker("reuse");
+        tracker.track(sink, source);
+        tracker.track(source);
+        tracker.startTracking();
+        assertEquals(Integer.valueOf(20), sink.getCompletion().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10_000)
+    public void untrackedDependencyIsAwaitedButNotStarted() throws Exception {
+        final ITaskService<Integer, Void> foreign = task("foreign", param -> 7);
+        final ITaskService<Integer, Integer> sink = task("sink", param -> param + 1);
+        final TaskTracker tracker = new TaskTracker("foreign");
+        tracker.track(sink, foreign);
+        tracker.startTracking();
+        Thread.sleep(50);
+        assertFalse(sink.getCompletion().isDone());
+        // Its owner starts it; only then does the graph continue.
+        foreign.execute();
+        assertEquals(Integer.valueOf(8), sink.getCompletion().get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,152 @@
+package io.fluffydaddy.jtasks.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fluffydaddy.jtasks.core.ITaskService;
+import io.fluffydaddy.jtasks.core.ITaskTrigger;
+import io.fluffydaddy.jtasks.execution.ExecutorPool;
+import io.fluffydaddy.jtasks.factory.Job;
+
+public class TaskTriggerTest {
+    private final ExecutorPool mPool = new ExecutorPool(4);
+    private final TaskFactory mFactory = new TaskFactory(mPool);
+
+    private final List<Integer> mParams = new CopyOnWriteArrayList<>();
+    private final List<Long> mStarts = new CopyOnWriteArrayList<>();
+    private final AtomicInteger mInside = new AtomicInteger();
+    private final AtomicInteger mOverlaps = new AtomicInteger();
+    private volatile CountDownLatch mGate = new CountDownLatch(0);
+
+    @After
+    public void tearDown() {
+        mGate.countDown();
+        mPool.shutdown();
+    }
+
+    /*
+     * Записывает аргумент и время каждого запуска; пока закрыт mGate, запуск висит.
+     */
+    private ITaskService<Integer, Integer> recording() {
+        return mFactory.createTask(new Job<Integer, Integer>() {
+            @Override
+            public Integer doInBackground(Integer param) throws Exception {
+                if (mInside.incrementAndGet() > 1) {
+                    mOverlaps.incrementAndGet();
+                }
+                mStarts.add(System.nanoTime());
+                mParams.add(param);
+                try {
+                    mGate.await();
+                } finally {
+                    mInside.decrementAndGet();
+                }
+                return param;
+            }
+
+            @Override
+            public void onFinishing(Integer result) {
+            }
+
+            @Override
+            public void onBeginning() {
+            }
+        });
+    }
+
+    private void awaitRuns(int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mParams.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, mParams.size());
+    }
+
+    @Test(timeout = 10_000)
+    public void conflateRunsOnceMoreWithTheLatestArgument() throws Exception {
+        mGate = new CountDownLatch(1);
+        final ITaskTrigger<Integer, Integer> trigger = recording().conflate();
+        trigger.trigger(0);
+        awaitRuns(1);
+        for (int i = 1; i <= 10; i++) {
+            trigger.trigger(i);
+        }
+        mGate.countDown();
+        awaitRuns(2);
+        Thread.sleep(50);
+        assertEquals(Arrays.asList(0, 10), mParams);
+        assertEquals(0, mOverlaps.get());
+        assertEquals(11, trigger.getTriggerCount());
+        assertEquals(2, trigger.getRunCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void debounceRunsOnceAfterTheBurstGoesQuiet() throws Exception {
+        final ITaskTrigger<Integer, Integer> trigger = recording().debounce(50, TimeUnit.MILLISECONDS);
+        long lastTrigger = 0;
+        for (int i = 1; i <= 5; i++) {
+            lastTrigger = System.nanoTime();
+            trigger.trigger(i);
+            Thread.sleep(10);
+        }
+        awaitRuns(1);
+        Thread.sleep(100);
+        assertEquals(Arrays.asList(5), mParams);
+        assertTrue(mStarts.get(0) - lastTrigger >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test(timeout = 10_000)
+    public void throttleRunsAtOnceThenOncePerWindow() throws Exception {
+        final ITaskTrigger<Integer, Integer> trigger = recording().throttle(60, TimeUnit.MILLISECONDS);
+        trigger.trigger(1);
+        awaitRuns(1);
+        for (int i = 2; i <= 6; i++) {
+            trigger.trigger(i);
+        }
+        awaitRuns(2);
+        Thread.sleep(100);
+        assertEquals(Arrays.asList(1, 6), mParams);
+        assertTrue(mStarts.get(1) - mStarts.get(0) >= TimeUnit.MILLISECONDS.toNanos(60));
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelDropsThePendingRun() throws Exception {
+        final ITaskTrigger<Integer, Integer> trigger = recording().debounce(30, TimeUnit.MILLISECONDS);
+        trigger.trigger(1);
+        trigger.cancel();
+        Thread.sleep(100);
+        assertTrue(mParams.isEmpty());
+        // The trigger still works afterwards.
+        trigger.trigger(2);
+        awaitRuns(1);
+        assertEquals(Arrays.asList(2), mParams);
+    }
+
+    @Test
+    public void timedTriggersNeedAWindow() {
+        final ITaskService<Integer, Integer> task = recording();
+        try {
+            task.debounce(0, TimeUnit.MILLISECONDS);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // Debounce without a quiet period means nothing.
+        }
+        try {
+            task.throttle(-1, TimeUnit.MILLISECONDS);
+            fail("expected rejection");
+        } catch (IllegalArgumentException expected) {
+            // Throttle needs a positive window.
+        }
+    }
+}